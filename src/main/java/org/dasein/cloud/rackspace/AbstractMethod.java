@@ -18,43 +18,54 @@
 
 package org.dasein.cloud.rackspace;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.util.HashMap;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.Properties;
-
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
-import org.apache.http.HttpVersion;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.HttpParams;
-import org.apache.http.params.HttpProtocolParams;
-import org.apache.http.protocol.HTTP;
+import org.apache.http.params.CoreProtocolPNames;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 import org.dasein.cloud.CloudErrorType;
 import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
 import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.rackspace.metrics.MetricsCollector;
+import org.dasein.cloud.rackspace.metrics.RequestSample;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 public abstract class AbstractMethod {
     protected RackspaceCloud provider;
@@ -74,7 +85,6 @@ public abstract class AbstractMethod {
         }
         try {
             ProviderContext ctx = provider.getContext();
-            HttpClient client = getClient();
             HttpGet get = new HttpGet(provider.getEndpoint());
             
             try {
@@ -89,35 +99,13 @@ public abstract class AbstractMethod {
                 }
                 throw new InternalException(e);
             }
-            if( wire.isDebugEnabled() ) {
-                wire.debug(get.getRequestLine().toString());
-                for( Header header : get.getAllHeaders() ) {
-                    wire.debug(header.getName() + ": " + header.getValue());
-                }
-                wire.debug("");
-            }
-            HttpResponse response;
-
-            try {
-                response = client.execute(get);
-                if( wire.isDebugEnabled() ) {
-                    wire.debug(response.getStatusLine().toString());
-                    for( Header header : response.getAllHeaders() ) {
-                        wire.debug(header.getName() + ": " + header.getValue());
-                    }
-                    wire.debug("");
-                }
-            }
-            catch( IOException e ) {
-                std.error("I/O error from server communications: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
-            }
+            HttpResponse response = execute(get, null);
             int code = response.getStatusLine().getStatusCode();
 
             std.debug("HTTP STATUS: " + code);
             if( code != HttpServletResponse.SC_NO_CONTENT ) {
                 if( code == HttpServletResponse.SC_FORBIDDEN || code == HttpServletResponse.SC_UNAUTHORIZED ) {
+                    consume(response);
                     return null;
                 }
                 std.error("authenticate(): Expected NO CONTENT for an authentication request, got " + code);
@@ -170,6 +158,7 @@ public abstract class AbstractMethod {
                         authContext.setStorageToken(h.getValue().trim());
                     }
                 }
+                consume(response);
                 if( authContext.getAuthToken() == null ) {
                     std.warn("authenticate(): No authentication token in response");
                     throw new CloudException("No authentication token in cloud response");
@@ -188,6 +177,92 @@ public abstract class AbstractMethod {
         }
     }
     
+    /**
+     * The WebDAV-style <code>COPY</code> verb Swift accepts for server-side copies.
+     */
+    static private class HttpCopy extends HttpRequestBase {
+        public HttpCopy(@Nonnull String uri) {
+            setURI(URI.create(uri));
+        }
+
+        @Override
+        public String getMethod() {
+            return "COPY";
+        }
+    }
+
+    /**
+     * Copies the resource to the specified destination on the server side, so the content never passes through
+     * this client. No content type is sent so that the copy keeps the one of the original.
+     * @param destination the destination in the form <code>container/object</code>
+     */
+    protected void copy(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource, @Nonnull String destination) throws CloudException, InternalException {
+        Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
+        Logger wire = RackspaceCloud.getLogger(RackspaceCloud.class, "wire");
+
+        if( std.isTraceEnabled() ) {
+            std.trace("enter - " + AbstractMethod.class.getName() + ".copy(" + authToken + "," + endpoint + "," + resource + "," + destination + ")");
+        }
+        if( wire.isDebugEnabled() ) {
+            wire.debug("--------------------------------------------------------> " + endpoint + resource);
+            wire.debug("");
+        }
+        try {
+            HttpCopy copy = new HttpCopy(endpoint + resource);
+
+            copy.addHeader("X-Auth-Token", authToken);
+            copy.addHeader("Destination", destination);
+
+            HttpResponse response = execute(copy, null);
+            int code = response.getStatusLine().getStatusCode();
+
+            std.debug("HTTP STATUS: " + code);
+
+            if( code != HttpServletResponse.SC_CREATED && code != HttpServletResponse.SC_ACCEPTED && code != HttpServletResponse.SC_NO_CONTENT ) {
+                std.error("copy(): Expected CREATED for COPY request, got " + code);
+                HttpEntity entity = response.getEntity();
+                String json = null;
+
+                if( entity != null ) {
+                    try {
+                        json = EntityUtils.toString(entity);
+
+                        if( wire.isDebugEnabled() ) {
+                            wire.debug(json);
+                            wire.debug("");
+                        }
+                    }
+                    catch( IOException e ) {
+                        throw new CloudException(e);
+                    }
+                }
+                RackspaceException.ExceptionItems items = (json == null ? null : RackspaceException.parseException(code, json));
+
+                if( items == null ) {
+                    items = new RackspaceException.ExceptionItems();
+                    items.code = 404;
+                    items.type = CloudErrorType.COMMUNICATION;
+                    items.message = "itemNotFound";
+                    items.details = "No such object: " + resource;
+                }
+                std.error("copy(): [" +  code + " : " + items.message + "] " + items.details);
+                throw new RackspaceException(items);
+            }
+            else {
+                consume(response);
+            }
+        }
+        finally {
+            if( std.isTraceEnabled() ) {
+                std.trace("exit - " + AbstractMethod.class.getName() + ".copy()");
+            }
+            if( wire.isDebugEnabled() ) {
+                wire.debug("");
+                wire.debug("--------------------------------------------------------> " + endpoint + resource);
+            }
+        }
+    }
+
     protected void delete(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource) throws CloudException, InternalException {
         Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
         Logger wire = RackspaceCloud.getLogger(RackspaceCloud.class, "wire");
@@ -200,36 +275,12 @@ public abstract class AbstractMethod {
             wire.debug("");
         }
         try {
-            HttpClient client = getClient();
             HttpDelete delete = new HttpDelete(endpoint + resource);
             
             delete.addHeader("Content-Type", "application/json");
             delete.addHeader("X-Auth-Token", authToken);
 
-            if( wire.isDebugEnabled() ) {
-                wire.debug(delete.getRequestLine().toString());
-                for( Header header : delete.getAllHeaders() ) {
-                    wire.debug(header.getName() + ": " + header.getValue());
-                }
-                wire.debug("");
-            }
-            HttpResponse response;
-
-            try {
-                response = client.execute(delete);
-                if( wire.isDebugEnabled() ) {
-                    wire.debug(response.getStatusLine().toString());
-                    for( Header header : response.getAllHeaders() ) {
-                        wire.debug(header.getName() + ": " + header.getValue());
-                    }
-                    wire.debug("");
-                }
-            }
-            catch( IOException e ) {
-                std.error("I/O error from server communications: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
-            }
+            HttpResponse response = execute(delete, null);
             int code = response.getStatusLine().getStatusCode();
 
             std.debug("HTTP STATUS: " + code);
@@ -265,6 +316,7 @@ public abstract class AbstractMethod {
                 throw new RackspaceException(items);
             }
             else {
+                consume(response);
                 wire.debug("");
             }
         }
@@ -278,54 +330,260 @@ public abstract class AbstractMethod {
             }               
         }
     }
+
+    protected @Nonnull Future<Void> deleteAsync(@Nonnull final String authToken, @Nonnull final String endpoint, @Nonnull final String resource) throws CloudException {
+        return submit(new Callable<Void>() {
+            public Void call() throws CloudException, InternalException {
+                delete(authToken, endpoint, resource);
+                return null;
+            }
+        });
+    }
     
-    protected @Nullable String getString(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource) throws CloudException, InternalException {
+    /**
+     * Fetches the specified byte range of a resource. The range is never compressed in transit so that the
+     * bytes line up with the offsets requested.
+     * @param first the offset of the first byte
+     * @param last the offset of the last byte, inclusive
+     * @param ifMatch an ETag the resource must still carry, or null to accept any version
+     * @return the content of the range, or null if the resource does not exist
+     * @throws CloudException the server did not honor the range or the resource changed
+     */
+    protected @Nullable InputStream getRange(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource, @Nonnegative long first, @Nonnegative long last, @Nullable String ifMatch) throws CloudException, InternalException {
+        return getRange(authToken, endpoint, resource, first, last, ifMatch, null);
+    }
+
+    /**
+     * Fetches the specified byte range of a resource along with its response headers, from which the
+     * <code>Content-Range</code> gives the full length of the resource. An empty resource comes back as an
+     * empty stream with a <code>Content-Range</code> of <code>bytes *&#47;0</code>.
+     * @param headers a map to fill with the response headers, or null if they are not needed
+     * @return the content of the range, or null if the resource does not exist
+     * @throws CloudException the server did not honor the range or the resource changed
+     */
+    protected @Nullable InputStream getRange(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource, @Nonnegative long first, @Nonnegative long last, @Nullable String ifMatch, @Nullable Map<String,String> headers) throws CloudException, InternalException {
         Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
         Logger wire = RackspaceCloud.getLogger(RackspaceCloud.class, "wire");
-        
+
         if( std.isTraceEnabled() ) {
-            std.trace("enter - " + AbstractMethod.class.getName() + ".getString(" + authToken + "," + endpoint + "," + resource + ")");
+            std.trace("enter - " + AbstractMethod.class.getName() + ".getRange(" + authToken + "," + endpoint + "," + resource + "," + first + "," + last + "," + ifMatch + ")");
         }
         if( wire.isDebugEnabled() ) {
             wire.debug("--------------------------------------------------------> " + endpoint + resource);
             wire.debug("");
         }
         try {
-            HttpClient client = getClient();
             HttpGet get = new HttpGet(endpoint + resource);
-            
-            get.addHeader("Content-Type", "application/json");
+
             get.addHeader("X-Auth-Token", authToken);
+            get.addHeader("Range", "bytes=" + first + "-" + last);
+            get.addHeader("Accept-Encoding", "identity");
+            if( ifMatch != null ) {
+                get.addHeader("If-Match", ifMatch);
+            }
+            HttpResponse response = execute(get, null);
+            int code = response.getStatusLine().getStatusCode();
 
-            if( wire.isDebugEnabled() ) {
-                wire.debug(get.getRequestLine().toString());
-                for( Header header : get.getAllHeaders() ) {
-                    wire.debug(header.getName() + ": " + header.getValue());
+            std.debug("HTTP STATUS: " + code);
+
+            if( code == HttpServletResponse.SC_NOT_FOUND ) {
+                consume(response);
+                return null;
+            }
+            if( code == HttpServletResponse.SC_PRECONDITION_FAILED ) {
+                consume(response);
+                throw new CloudException(CloudErrorType.COMMUNICATION, HttpServletResponse.SC_PRECONDITION_FAILED, "preconditionFailed", resource + " changed while it was being downloaded");
+            }
+            if( headers != null ) {
+                for( Header h : response.getAllHeaders() ) {
+                    headers.put(h.getName().trim(), h.getValue().trim());
                 }
-                wire.debug("");
             }
-            HttpResponse response;
+            if( code == HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE ) {
+                Header range = response.getFirstHeader("Content-Range");
 
+                consume(response);
+                if( first == 0L && range != null && range.getValue().trim().equals("bytes */0") ) {
+                    return new ByteArrayInputStream(new byte[0]);
+                }
+                throw new CloudException("Unable to fetch bytes " + first + "-" + last + " of " + resource + ": " + response.getStatusLine());
+            }
+            if( code != HttpServletResponse.SC_PARTIAL_CONTENT ) {
+                std.error("getRange(): Expected PARTIAL CONTENT for ranged GET request, got " + code);
+                consume(response);
+                throw new CloudException(CloudErrorType.COMMUNICATION, code, String.valueOf(code), "Unable to fetch bytes " + first + "-" + last + " of " + resource + ": " + response.getStatusLine());
+            }
+            HttpEntity entity = response.getEntity();
+
+            if( entity == null ) {
+                throw new CloudException("No content in the range " + first + "-" + last + " of " + resource);
+            }
             try {
-                response = client.execute(get);
                 if( wire.isDebugEnabled() ) {
-                    wire.debug(response.getStatusLine().toString());
-                    for( Header header : response.getAllHeaders() ) {
-                        wire.debug(header.getName() + ": " + header.getValue());
-                    }
+                    wire.debug("---> Binary Data <---");
                     wire.debug("");
                 }
+                return entity.getContent();
             }
             catch( IOException e ) {
-                std.error("I/O error from server communications: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
+                std.error("getRange(): Failed to read response due to a cloud I/O error: " + e.getMessage());
+                throw new CloudException(e);
+            }
+        }
+        finally {
+            if( std.isTraceEnabled() ) {
+                std.trace("exit - " + AbstractMethod.class.getName() + ".getRange()");
             }
+            if( wire.isDebugEnabled() ) {
+                wire.debug("");
+                wire.debug("--------------------------------------------------------> " + endpoint + resource);
+            }
+        }
+    }
+
+    /**
+     * Fetches a JSON document, going through the {@link ResponseCache} when it is enabled: a cached copy is
+     * revalidated with <code>If-None-Match</code> and <code>If-Modified-Since</code> and handed back as is when the
+     * cloud answers 304. A cached document is shared by every caller and must not be modified.
+     */
+    protected @Nullable JSONObject getJSON(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource) throws CloudException, InternalException {
+        Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
+        Logger wire = RackspaceCloud.getLogger(RackspaceCloud.class, "wire");
+        ResponseCache cache = provider.getResponseCache();
+        String url = endpoint + resource;
+
+        if( !cache.isCacheable(url) ) {
+            String json = getString(authToken, endpoint, resource);
+
+            return (json == null ? null : toJSON(json));
+        }
+        if( std.isTraceEnabled() ) {
+            std.trace("enter - " + AbstractMethod.class.getName() + ".getJSON(" + authToken + "," + endpoint + "," + resource + ")");
+        }
+        if( wire.isDebugEnabled() ) {
+            wire.debug("--------------------------------------------------------> " + url);
+            wire.debug("");
+        }
+        try {
+            ResponseCache.Entry cached = cache.get(url);
+            HttpGet get = new HttpGet(url);
+
+            get.addHeader("Content-Type", "application/json");
+            get.addHeader("X-Auth-Token", authToken);
+            if( cached != null ) {
+                if( cached.getETag() != null ) {
+                    get.addHeader("If-None-Match", cached.getETag());
+                }
+                if( cached.getLastModified() != null ) {
+                    get.addHeader("If-Modified-Since", cached.getLastModified());
+                }
+            }
+
+            HttpResponse response = execute(get, null);
             int code = response.getStatusLine().getStatusCode();
 
             std.debug("HTTP STATUS: " + code);
 
+            if( code == HttpServletResponse.SC_NOT_MODIFIED ) {
+                consume(response);
+                if( cached == null ) {
+                    return null;
+                }
+                cache.hit();
+                return cached.getBody();
+            }
             if( code == HttpServletResponse.SC_NOT_FOUND ) {
+                consume(response);
+                cache.put(url, null, null, null);
+                return null;
+            }
+            HttpEntity entity = response.getEntity();
+            String json = null;
+
+            if( entity != null ) {
+                try {
+                    json = EntityUtils.toString(entity);
+
+                    if( wire.isDebugEnabled() ) {
+                        wire.debug(json);
+                        wire.debug("");
+                    }
+                }
+                catch( IOException e ) {
+                    throw new CloudException(e);
+                }
+            }
+            if( code != HttpServletResponse.SC_NO_CONTENT && code != HttpServletResponse.SC_OK && code != HttpServletResponse.SC_NON_AUTHORITATIVE_INFORMATION ) {
+                std.error("getJSON(): Expected OK for GET request, got " + code);
+                RackspaceException.ExceptionItems items = (json == null ? null : RackspaceException.parseException(code, json));
+
+                if( items == null ) {
+                    return null;
+                }
+                std.error("getJSON(): [" +  code + " : " + items.message + "] " + items.details);
+                throw new RackspaceException(items);
+            }
+            if( json == null || json.trim().length() < 1 ) {
+                cache.put(url, null, null, null);
+                return null;
+            }
+            JSONObject ob = toJSON(json);
+            Header etag = response.getFirstHeader("ETag");
+            Header lastModified = response.getFirstHeader("Last-Modified");
+
+            cache.miss();
+            cache.put(url, etag == null ? null : etag.getValue(), lastModified == null ? null : lastModified.getValue(), ob);
+            return ob;
+        }
+        finally {
+            if( std.isTraceEnabled() ) {
+                std.trace("exit - " + AbstractMethod.class.getName() + ".getJSON()");
+            }
+            if( wire.isDebugEnabled() ) {
+                wire.debug("");
+                wire.debug("--------------------------------------------------------> " + url);
+            }
+        }
+    }
+
+    static private @Nonnull JSONObject toJSON(@Nonnull String json) throws CloudException {
+        try {
+            return new JSONObject(json);
+        }
+        catch( JSONException e ) {
+            throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", json);
+        }
+    }
+
+    protected @Nullable String getString(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource) throws CloudException, InternalException {
+        Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
+        Logger wire = RackspaceCloud.getLogger(RackspaceCloud.class, "wire");
+        
+        if( std.isTraceEnabled() ) {
+            std.trace("enter - " + AbstractMethod.class.getName() + ".getString(" + authToken + "," + endpoint + "," + resource + ")");
+        }
+        if( wire.isDebugEnabled() ) {
+            wire.debug("--------------------------------------------------------> " + endpoint + resource);
+            wire.debug("");
+        }
+        try {
+            HttpGet get = new HttpGet(endpoint + resource);
+            
+            get.addHeader("Content-Type", "application/json");
+            get.addHeader("X-Auth-Token", authToken);
+
+            HttpResponse response = execute(get, null);
+            int code = response.getStatusLine().getStatusCode();
+
+            std.debug("HTTP STATUS: " + code);
+
+            if( code == HttpServletResponse.SC_NOT_MODIFIED ) {
+                // changes-since listings answer this way when nothing has changed, even to unconditional requests
+                consume(response);
+                return null;
+            }
+            if( code == HttpServletResponse.SC_NOT_FOUND ) {
+                consume(response);
                 return null;
             }
             if( code != HttpServletResponse.SC_NO_CONTENT && code != HttpServletResponse.SC_OK && code != HttpServletResponse.SC_NON_AUTHORITATIVE_INFORMATION ) {
@@ -385,6 +643,14 @@ public abstract class AbstractMethod {
             }               
         }
     }
+
+    protected @Nonnull Future<String> getStringAsync(@Nonnull final String authToken, @Nonnull final String endpoint, @Nonnull final String resource) throws CloudException {
+        return submit(new Callable<String>() {
+            public String call() throws CloudException, InternalException {
+                return getString(authToken, endpoint, resource);
+            }
+        });
+    }
     
     protected @Nullable InputStream getStream(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource) throws CloudException, InternalException {
         Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
@@ -398,41 +664,18 @@ public abstract class AbstractMethod {
             wire.debug("");
         }
         try {
-            HttpClient client = getClient();
             HttpGet get = new HttpGet(endpoint + resource);
             
             get.addHeader("Content-Type", "application/json");
             get.addHeader("X-Auth-Token", authToken);
 
-            if( wire.isDebugEnabled() ) {
-                wire.debug(get.getRequestLine().toString());
-                for( Header header : get.getAllHeaders() ) {
-                    wire.debug(header.getName() + ": " + header.getValue());
-                }
-                wire.debug("");
-            }
-            HttpResponse response;
-
-            try {
-                response = client.execute(get);
-                if( wire.isDebugEnabled() ) {
-                    wire.debug(response.getStatusLine().toString());
-                    for( Header header : response.getAllHeaders() ) {
-                        wire.debug(header.getName() + ": " + header.getValue());
-                    }
-                    wire.debug("");
-                }
-            }
-            catch( IOException e ) {
-                std.error("I/O error from server communications: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
-            }
+            HttpResponse response = execute(get, null);
             int code = response.getStatusLine().getStatusCode();
 
             std.debug("HTTP STATUS: " + code);
 
             if( code == HttpServletResponse.SC_NOT_FOUND ) {
+                consume(response);
                 return null;
             }
             if( code != HttpServletResponse.SC_OK && code != HttpServletResponse.SC_NON_AUTHORITATIVE_INFORMATION ) {
@@ -497,40 +740,335 @@ public abstract class AbstractMethod {
         }
     }
 
-    private @Nonnull HttpClient getClient() throws CloudException {
-        ProviderContext ctx = provider.getContext();
+    protected @Nonnull Future<InputStream> getStreamAsync(@Nonnull final String authToken, @Nonnull final String endpoint, @Nonnull final String resource) throws CloudException {
+        return submit(new Callable<InputStream>() {
+            public InputStream call() throws CloudException, InternalException {
+                return getStream(authToken, endpoint, resource);
+            }
+        });
+    }
 
-        if( ctx == null ) {
-            throw new CloudException("No context was provided for this request");
+    /**
+     * Strips the quotes some servers put around an ETag.
+     */
+    static public @Nullable String unquote(@Nullable String etag) {
+        if( etag != null && etag.length() > 1 && etag.startsWith("\"") && etag.endsWith("\"") ) {
+            return etag.substring(1, etag.length()-1);
+        }
+        return etag;
+    }
+
+    private void consume(@Nonnull HttpResponse response) {
+        HttpEntity entity = response.getEntity();
+
+        if( entity != null ) {
+            try {
+                EntityUtils.consume(entity);
+            }
+            catch( IOException e ) {
+                Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
+
+                std.warn("Failed to release connection after an I/O error: " + e.getMessage());
+            }
+        }
+    }
+
+    private @Nonnull HttpResponse execute(@Nonnull HttpRequestBase request, @Nullable String payload) throws CloudException, InternalException {
+        Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
+        RetryPolicy policy = provider.getRetryPolicy();
+        long start = System.currentTimeMillis();
+        String family = getFamily(request);
+        final String operation = getOperation(request, family);
+        final MetricsCollector metrics = provider.getMetrics();
+        ConnectionPool pool = provider.getConnectionPool();
+        ResponseCompression compression = provider.getResponseCompression();
+        final AtomicLong sent = new AtomicLong(0L);
+        boolean reauthenticated = false;
+        long connectionWait = 0L, tokenWait = 0L;
+        int attempt = 0, code = 0;
+
+        compression.prepare(request, family);
+        if( request instanceof HttpEntityEnclosingRequest ) {
+            HttpEntityEnclosingRequest r = (HttpEntityEnclosingRequest)request;
+
+            if( r.getEntity() != null ) {
+                r.setEntity(new CountingEntity(r.getEntity()) {
+                    @Override
+                    protected void counted(long bytes) {
+                        sent.addAndGet(bytes);
+                    }
+                });
+            }
+        }
+        pool.takeLeaseWait();
+        try {
+            while( true ) {
+                if( family != null ) {
+                    try {
+                        tokenWait += provider.getRateLimiter().acquire(family, request.getMethod());
+                    }
+                    catch( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                        throw new InternalException(e);
+                    }
+                }
+                HttpResponse response;
+
+                try {
+                    response = send(request, payload);
+                }
+                finally {
+                    connectionWait += pool.takeLeaseWait();
+                }
+                HttpEntity entity = response.getEntity();
+
+                code = response.getStatusLine().getStatusCode();
+                if( entity != null ) {
+                    response.setEntity(new CountingEntity(entity) {
+                        @Override
+                        protected void counted(long bytes) {
+                            metrics.bytesReceived(operation, bytes);
+                        }
+                    });
+                }
+                compression.decode(response, operation, metrics);
+
+                if( !isRepeatable(request) ) {
+                    return response;
+                }
+                if( code == HttpServletResponse.SC_UNAUTHORIZED && !reauthenticated ) {
+                    Header token = request.getFirstHeader("X-Auth-Token");
+
+                    if( token != null ) {
+                        consume(response);
+                        std.debug("execute(): Token rejected for " + request.getRequestLine() + ", refreshing authentication");
+                        AuthenticationContext ctx = provider.reauthenticate(token.getValue());
+                        boolean storage = (RateLimiter.STORAGE.equals(family) || RateLimiter.CDN.equals(family));
+
+                        request.setHeader("X-Auth-Token", storage ? ctx.getStorageToken() : ctx.getAuthToken());
+                        reauthenticated = true;
+                        continue;
+                    }
+                }
+                long delay = policy.getDelay(request.getMethod(), response, attempt, System.currentTimeMillis() - start);
+
+                if( delay < 0L ) {
+                    return response;
+                }
+                consume(response);
+                attempt++;
+                policy.retried();
+                std.warn("execute(): " + request.getRequestLine() + " returned " + code + ", retry " + attempt + " in " + delay + "ms");
+                try {
+                    Thread.sleep(delay);
+                }
+                catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new InternalException(e);
+                }
+            }
         }
-        String endpoint = ctx.getEndpoint();
-        boolean ssl = (endpoint != null && endpoint.startsWith("https"));
-        HttpParams params = new BasicHttpParams();
+        finally {
+            metrics.requestCompleted(new RequestSample(operation, code, System.currentTimeMillis() - start, attempt, sent.get(), connectionWait, tokenWait));
+        }
+    }
 
-        HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
-        //noinspection deprecation
-        HttpProtocolParams.setContentCharset(params, HTTP.UTF_8);
-        HttpProtocolParams.setUserAgent(params, "Dasein Cloud");
+    private @Nullable String getFamily(@Nonnull HttpRequestBase request) throws CloudException, InternalException {
+        // only authentication goes out without a token, and it is not subject to the API limits
+        if( request.getFirstHeader("X-Auth-Token") == null ) {
+            return null;
+        }
+        AuthenticationContext ctx = provider.getAuthenticationContext();
+        String uri = request.getURI().toString();
 
-        Properties p = ctx.getCustomProperties();
+        if( ctx.getStorageUrl() != null && uri.startsWith(ctx.getStorageUrl()) ) {
+            return RateLimiter.STORAGE;
+        }
+        else if( ctx.getCdnUrl() != null && uri.startsWith(ctx.getCdnUrl()) ) {
+            return RateLimiter.CDN;
+        }
+        else if( ctx.getServerUrl() != null && uri.startsWith(ctx.getServerUrl()) ) {
+            return RateLimiter.SERVERS;
+        }
+        else if( uri.contains("loadbalancers") ) {
+            return RateLimiter.LOAD_BALANCERS;
+        }
+        return null;
+    }
+
+    private @Nonnull String getOperation(@Nonnull HttpRequestBase request, @Nullable String family) throws CloudException, InternalException {
+        if( family == null ) {
+            return "auth.authenticate";
+        }
+        AuthenticationContext ctx = provider.getAuthenticationContext();
+        String uri = request.getURI().toString();
+        String prefix, base;
+
+        if( family.equals(RateLimiter.STORAGE) ) {
+            prefix = "files";
+            base = ctx.getStorageUrl();
+        }
+        else if( family.equals(RateLimiter.CDN) ) {
+            prefix = "cdn";
+            base = ctx.getCdnUrl();
+        }
+        else if( family.equals(RateLimiter.LOAD_BALANCERS) ) {
+            ProviderContext pc = provider.getContext();
+
+            prefix = "lb";
+            base = (pc == null || pc.getRegionId() == null ? null : ctx.getLoadBalancerUrl(pc.getRegionId()));
+        }
+        else {
+            prefix = null;
+            base = ctx.getServerUrl();
+        }
+        String path = (base != null && uri.startsWith(base) ? uri.substring(base.length()) : request.getURI().getPath());
+        int idx = path.indexOf('?');
 
-        if( p != null ) {
-            String proxyHost = p.getProperty("proxyHost");
-            String proxyPort = p.getProperty("proxyPort");
+        if( idx > -1 ) {
+            path = path.substring(0, idx);
+        }
+        ArrayList<String> segments = new ArrayList<String>();
+
+        for( String segment : path.split("/") ) {
+            if( segment.length() > 0 ) {
+                segments.add(segment);
+            }
+        }
+        if( prefix == null ) {
+            // the Servers API hosts several collections, so label by collection
+            prefix = (segments.isEmpty() ? "servers" : segments.get(0));
+        }
+        String method = request.getMethod();
+        boolean collection = (segments.size() < 2 || (segments.size() == 2 && segments.get(1).equals("detail")));
+        String action;
 
-            if( proxyHost != null ) {
-                int port = 0;
+        if( method.equals("GET") ) {
+            action = (collection ? "list" : "get");
+        }
+        else if( method.equals("POST") ) {
+            action = (collection ? "create" : "post");
+        }
+        else {
+            action = method.toLowerCase();
+        }
+        return prefix + "." + action;
+    }
+
+    private boolean isExpectContinue() {
+        ProviderContext ctx = provider.getContext();
+        Properties p = (ctx == null ? null : ctx.getCustomProperties());
 
-                if( proxyPort != null && proxyPort.length() > 0 ) {
-                    port = Integer.parseInt(proxyPort);
+        return (p != null && "true".equalsIgnoreCase(p.getProperty("expectContinue")));
+    }
+
+    private boolean isRepeatable(@Nonnull HttpRequestBase request) {
+        if( request instanceof HttpEntityEnclosingRequest ) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest)request).getEntity();
+
+            return (entity == null || entity.isRepeatable());
+        }
+        return true;
+    }
+
+    private @Nonnull HttpResponse send(@Nonnull HttpRequestBase request, @Nullable String payload) throws CloudException, InternalException {
+        Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
+        Logger wire = RackspaceCloud.getLogger(RackspaceCloud.class, "wire");
+        HttpClient client = getClient();
+
+        if( wire.isDebugEnabled() ) {
+            wire.debug(request.getRequestLine().toString());
+            for( Header header : request.getAllHeaders() ) {
+                wire.debug(header.getName() + ": " + header.getValue());
+            }
+            wire.debug("");
+            if( payload != null ) {
+                wire.debug(payload);
+                wire.debug("");
+            }
+        }
+        try {
+            HttpResponse response = client.execute(request);
+
+            if( wire.isDebugEnabled() ) {
+                wire.debug(response.getStatusLine().toString());
+                for( Header header : response.getAllHeaders() ) {
+                    wire.debug(header.getName() + ": " + header.getValue());
                 }
-                params.setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(proxyHost, port, ssl ? "https" : "http"));
+                wire.debug("");
+            }
+            return response;
+        }
+        catch( IOException e ) {
+            request.abort();
+            std.error("I/O error from server communications: " + e.getMessage());
+            e.printStackTrace();
+            throw new InternalException(e);
+        }
+    }
+
+    /**
+     * Runs the specified call on the provider's request threads rather than on the calling thread. When the
+     * request threads are all busy and their queue is full, or the provider has been closed, the call is refused
+     * with a {@link CloudException} and never runs.
+     */
+    protected @Nonnull <T> Future<T> submit(@Nonnull Callable<T> call) throws CloudException {
+        try {
+            return provider.getExecutor().submit(call);
+        }
+        catch( RejectedExecutionException e ) {
+            throw new CloudException(e);
+        }
+    }
+
+    /**
+     * Waits for a call started through one of the asynchronous request methods, rethrowing whatever
+     * {@link CloudException} or {@link InternalException} it failed with.
+     */
+    static public <T> T getResult(@Nonnull Future<T> future) throws CloudException, InternalException {
+        try {
+            return future.get();
+        }
+        catch( InterruptedException e ) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        catch( ExecutionException e ) {
+            Throwable cause = e.getCause();
+
+            if( cause instanceof CloudException ) {
+                throw (CloudException)cause;
+            }
+            if( cause instanceof InternalException ) {
+                throw (InternalException)cause;
             }
+            if( cause instanceof RuntimeException ) {
+                throw (RuntimeException)cause;
+            }
+            throw new InternalException(cause);
+        }
+    }
+
+    private @Nonnull HttpClient getClient() throws CloudException {
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new CloudException("No context was provided for this request");
         }
-        return new DefaultHttpClient(params);
+        return provider.getConnectionPool().getClient();
     }
     
     protected @Nullable Map<String,String> head(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource) throws CloudException, InternalException {
+        return head(authToken, endpoint, resource, null);
+    }
+
+    /**
+     * Fetches the headers of a resource, optionally only if it no longer matches a known ETag.
+     * @param ifNoneMatch the ETag of the copy the caller already holds, or null for an unconditional request
+     * @return the headers of the resource, an empty map if it still matches <code>ifNoneMatch</code>, or null if it does not exist
+     */
+    protected @Nullable Map<String,String> head(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource, @Nullable String ifNoneMatch) throws CloudException, InternalException {
         Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
         Logger wire = RackspaceCloud.getLogger(RackspaceCloud.class, "wire");
         
@@ -542,35 +1080,14 @@ public abstract class AbstractMethod {
             wire.debug("");
         }
         try {
-            HttpClient client = getClient();
             HttpHead head = new HttpHead(endpoint + resource);
             
             head.addHeader("X-Auth-Token", authToken);
-
-            if( wire.isDebugEnabled() ) {
-                wire.debug(head.getRequestLine().toString());
-                for( Header header : head.getAllHeaders() ) {
-                    wire.debug(header.getName() + ": " + header.getValue());
-                }
-                wire.debug("");
+            if( ifNoneMatch != null ) {
+                head.addHeader("If-None-Match", "\"" + ifNoneMatch + "\"");
             }
-            HttpResponse response;
 
-            try {
-                response = client.execute(head);
-                if( wire.isDebugEnabled() ) {
-                    wire.debug(response.getStatusLine().toString());
-                    for( Header header : response.getAllHeaders() ) {
-                        wire.debug(header.getName() + ": " + header.getValue());
-                    }
-                    wire.debug("");
-                }
-            }
-            catch( IOException e ) {
-                std.error("I/O error from server communications: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
-            }
+            HttpResponse response = execute(head, null);
             int code = response.getStatusLine().getStatusCode();
 
             std.debug("HTTP STATUS: " + code);
@@ -578,8 +1095,13 @@ public abstract class AbstractMethod {
 
             if( code != HttpServletResponse.SC_NO_CONTENT && code != HttpServletResponse.SC_OK ) {
                 if( code == HttpServletResponse.SC_NOT_FOUND ) {
+                    consume(response);
                     return null;
                 }
+                if( code == HttpServletResponse.SC_NOT_MODIFIED && ifNoneMatch != null ) {
+                    consume(response);
+                    return new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
+                }
                 std.error("head(): Expected NO CONTENT or OK for HEAD request, got " + code);
                 HttpEntity entity = response.getEntity();
                 String json = null;
@@ -605,11 +1127,12 @@ public abstract class AbstractMethod {
                 std.error("head(): [" +  code + " : " + items.message + "] " + items.details);
                 throw new RackspaceException(items);
             }
-            HashMap<String,String> map = new HashMap<String,String>();
+            TreeMap<String,String> map = new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
             
             for( Header h : response.getAllHeaders() ) {
                 map.put(h.getName().trim(), h.getValue().trim());
             }
+            consume(response);
             return map;
         }
         finally {
@@ -623,6 +1146,14 @@ public abstract class AbstractMethod {
         }
     }
 
+    protected @Nonnull Future<Map<String,String>> headAsync(@Nonnull final String authToken, @Nonnull final String endpoint, @Nonnull final String resource) throws CloudException {
+        return submit(new Callable<Map<String,String>>() {
+            public Map<String,String> call() throws CloudException, InternalException {
+                return head(authToken, endpoint, resource);
+            }
+        });
+    }
+
     @SuppressWarnings("unused")
     protected @Nullable String postHeaders(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource, @Nonnull Map<String,String> customHeaders) throws CloudException, InternalException {
         Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
@@ -636,7 +1167,6 @@ public abstract class AbstractMethod {
             wire.debug("");
         }
         try {
-            HttpClient client = getClient();
             HttpPost post = new HttpPost(endpoint + resource);
             
             post.addHeader("Content-Type", "application/json");
@@ -649,30 +1179,7 @@ public abstract class AbstractMethod {
                 }
             }
 
-            if( wire.isDebugEnabled() ) {
-                wire.debug(post.getRequestLine().toString());
-                for( Header header : post.getAllHeaders() ) {
-                    wire.debug(header.getName() + ": " + header.getValue());
-                }
-                wire.debug("");
-            }
-            HttpResponse response;
-
-            try {
-                response = client.execute(post);
-                if( wire.isDebugEnabled() ) {
-                    wire.debug(response.getStatusLine().toString());
-                    for( Header header : response.getAllHeaders() ) {
-                        wire.debug(header.getName() + ": " + header.getValue());
-                    }
-                    wire.debug("");
-                }
-            }
-            catch( IOException e ) {
-                std.error("I/O error from server communications: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
-            }
+            HttpResponse response = execute(post, null);
             int code = response.getStatusLine().getStatusCode();
 
             std.debug("HTTP STATUS: " + code);
@@ -729,6 +1236,9 @@ public abstract class AbstractMethod {
                         return json;
                     }
                 }
+                else {
+                    consume(response);
+                }
                 return null;
             }
         }
@@ -755,7 +1265,6 @@ public abstract class AbstractMethod {
             wire.debug("");
         }
         try {
-            HttpClient client = getClient();
             HttpPost post = new HttpPost(endpoint + resource);
             
             post.addHeader("Content-Type", "application/json");
@@ -764,34 +1273,7 @@ public abstract class AbstractMethod {
             if( payload != null ) {
                 post.setEntity(new StringEntity(payload, ContentType.APPLICATION_JSON));
             }
-            if( wire.isDebugEnabled() ) {
-                wire.debug(post.getRequestLine().toString());
-                for( Header header : post.getAllHeaders() ) {
-                    wire.debug(header.getName() + ": " + header.getValue());
-                }
-                wire.debug("");
-                if( payload != null ) {
-                    wire.debug(payload);
-                    wire.debug("");
-                }
-            }
-            HttpResponse response;
-
-            try {
-                response = client.execute(post);
-                if( wire.isDebugEnabled() ) {
-                    wire.debug(response.getStatusLine().toString());
-                    for( Header header : response.getAllHeaders() ) {
-                        wire.debug(header.getName() + ": " + header.getValue());
-                    }
-                    wire.debug("");
-                }
-            }
-            catch( IOException e ) {
-                std.error("I/O error from server communications: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
-            }
+            HttpResponse response = execute(post, payload);
             int code = response.getStatusLine().getStatusCode();
 
             std.debug("HTTP STATUS: " + code);
@@ -848,6 +1330,9 @@ public abstract class AbstractMethod {
                         return json;
                     }
                 }
+                else {
+                    consume(response);
+                }
                 return null;
             }
         }
@@ -862,6 +1347,14 @@ public abstract class AbstractMethod {
         }
     }
 
+    protected @Nonnull Future<String> postStringAsync(@Nonnull final String authToken, @Nonnull final String endpoint, @Nonnull final String resource, @Nullable final String payload) throws CloudException {
+        return submit(new Callable<String>() {
+            public String call() throws CloudException, InternalException {
+                return postString(authToken, endpoint, resource, payload);
+            }
+        });
+    }
+
     @SuppressWarnings("unused")
     protected @Nullable String postStream(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource, @Nullable String md5Hash, @Nullable InputStream stream) throws CloudException, InternalException {
         Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
@@ -875,7 +1368,6 @@ public abstract class AbstractMethod {
             wire.debug("");
         }
         try {
-            HttpClient client = getClient();
             HttpPost post = new HttpPost(endpoint + resource);
             
             post.addHeader("Content-Type", "application/octet-stream");
@@ -883,31 +1375,7 @@ public abstract class AbstractMethod {
 
             post.setEntity(new InputStreamEntity(stream, -1, ContentType.APPLICATION_OCTET_STREAM));
 
-            if( wire.isDebugEnabled() ) {
-                wire.debug(post.getRequestLine().toString());
-                for( Header header : post.getAllHeaders() ) {
-                    wire.debug(header.getName() + ": " + header.getValue());
-                }
-                wire.debug("");
-                wire.debug("--> BINARY DATA <--");
-            }
-            HttpResponse response;
-
-            try {
-                response = client.execute(post);
-                if( wire.isDebugEnabled() ) {
-                    wire.debug(response.getStatusLine().toString());
-                    for( Header header : response.getAllHeaders() ) {
-                        wire.debug(header.getName() + ": " + header.getValue());
-                    }
-                    wire.debug("");
-                }
-            }
-            catch( IOException e ) {
-                std.error("I/O error from server communications: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
-            }
+            HttpResponse response = execute(post, "--> BINARY DATA <--");
             int code = response.getStatusLine().getStatusCode();
 
             std.debug("HTTP STATUS: " + code);
@@ -920,6 +1388,7 @@ public abstract class AbstractMethod {
                 }
             }
             if( responseHash != null && md5Hash != null && !responseHash.equals(md5Hash) ) {
+                consume(response);
                 throw new CloudException("MD5 hash values do not match, probably data corruption");
             }
             if( code != HttpServletResponse.SC_ACCEPTED && code != HttpServletResponse.SC_NO_CONTENT ) {
@@ -975,6 +1444,9 @@ public abstract class AbstractMethod {
                         return json;
                     }
                 }
+                else {
+                    consume(response);
+                }
                 return null;
             }
         }
@@ -989,6 +1461,204 @@ public abstract class AbstractMethod {
         }
     }
     
+    /**
+     * Posts a plain text payload, such as the list of paths for a bulk operation, asking for a JSON response.
+     * @return the response body, or null if the server answered without one
+     */
+    protected @Nullable String postText(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource, @Nonnull String payload) throws CloudException, InternalException {
+        Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
+        Logger wire = RackspaceCloud.getLogger(RackspaceCloud.class, "wire");
+
+        if( std.isTraceEnabled() ) {
+            std.trace("enter - " + AbstractMethod.class.getName() + ".postText(" + authToken + "," + endpoint + "," + resource + ",PAYLOAD)");
+        }
+        if( wire.isDebugEnabled() ) {
+            wire.debug("---------------------------------------------------------------------------------" + endpoint + resource);
+            wire.debug("");
+        }
+        try {
+            HttpPost post = new HttpPost(endpoint + resource);
+
+            post.addHeader("X-Auth-Token", authToken);
+            post.addHeader("Accept", "application/json");
+            post.setEntity(new StringEntity(payload, ContentType.create("text/plain", "utf-8")));
+
+            HttpResponse response = execute(post, payload);
+            int code = response.getStatusLine().getStatusCode();
+
+            std.debug("HTTP STATUS: " + code);
+
+            HttpEntity entity = response.getEntity();
+            String body = null;
+
+            if( entity != null ) {
+                try {
+                    body = EntityUtils.toString(entity);
+
+                    if( wire.isDebugEnabled() ) {
+                        wire.debug(body);
+                        wire.debug("");
+                    }
+                }
+                catch( IOException e ) {
+                    throw new CloudException(e);
+                }
+            }
+            if( code != HttpServletResponse.SC_OK && code != HttpServletResponse.SC_ACCEPTED && code != HttpServletResponse.SC_NO_CONTENT ) {
+                std.error("postText(): Expected OK, ACCEPTED, or NO CONTENT for POST request, got " + code);
+                RackspaceException.ExceptionItems items = (body == null ? null : RackspaceException.parseException(code, body));
+
+                if( items == null ) {
+                    items = new RackspaceException.ExceptionItems();
+                    items.code = code;
+                    items.type = CloudErrorType.COMMUNICATION;
+                    items.message = "postFailed";
+                    items.details = "Unable to post to " + resource;
+                }
+                std.error("postText(): [" +  code + " : " + items.message + "] " + items.details);
+                throw new RackspaceException(items);
+            }
+            if( body == null || body.trim().equals("") ) {
+                return null;
+            }
+            return body;
+        }
+        finally {
+            if( std.isTraceEnabled() ) {
+                std.trace("exit - " + AbstractMethod.class.getName() + ".postText()");
+            }
+            if( wire.isDebugEnabled() ) {
+                wire.debug("");
+                wire.debug("---------------------------------------------------------------------------------" + endpoint + resource);
+            }
+        }
+    }
+
+    /**
+     * Uploads content held in memory with its MD5 sent as the ETag, so the server rejects it if it arrives damaged.
+     * @param contentType the content type, including any charset, to store with the object
+     * @return the ETag of the stored object
+     */
+    protected @Nonnull String putBytes(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource, @Nonnull byte[] content, @Nonnull String contentType) throws CloudException, InternalException {
+        String md5Hash;
+
+        try {
+            md5Hash = FileSegmentEntity.toHex(MessageDigest.getInstance("MD5").digest(content));
+        }
+        catch( NoSuchAlgorithmException e ) {
+            throw new InternalException(e);
+        }
+        ByteArrayEntity entity = new ByteArrayEntity(content);
+
+        entity.setContentType(contentType);
+        String etag = putEntity(authToken, endpoint, resource, entity, md5Hash, "putBytes");
+
+        if( etag != null && !etag.equalsIgnoreCase(md5Hash) ) {
+            throw new CloudException(CloudErrorType.COMMUNICATION, 422, "checksumMismatch", "MD5 hash values do not match for " + resource + ", probably data corruption: " + etag + " != " + md5Hash);
+        }
+        return md5Hash;
+    }
+
+    private @Nullable String putEntity(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource, @Nonnull HttpEntity entity, @Nullable String md5Hash, @Nonnull String label) throws CloudException, InternalException {
+        Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
+        Logger wire = RackspaceCloud.getLogger(RackspaceCloud.class, "wire");
+
+        if( std.isTraceEnabled() ) {
+            std.trace("enter - " + AbstractMethod.class.getName() + "." + label + "(" + authToken + "," + endpoint + "," + resource + "," + md5Hash + ")");
+        }
+        if( wire.isDebugEnabled() ) {
+            wire.debug("---------------------------------------------------------------------------------" + endpoint + resource);
+            wire.debug("");
+        }
+        try {
+            HttpPut put = new HttpPut(endpoint + resource);
+
+            put.addHeader("X-Auth-Token", authToken);
+            if( md5Hash != null ) {
+                put.addHeader("ETag", md5Hash);
+            }
+            put.setEntity(entity);
+            if( isExpectContinue() ) {
+                // lets the server turn away a bad token or a full account before the body is sent
+                put.getParams().setBooleanParameter(CoreProtocolPNames.USE_EXPECT_CONTINUE, true);
+            }
+
+            HttpResponse response = execute(put, "--> BINARY DATA <--");
+            int code = response.getStatusLine().getStatusCode();
+
+            std.debug("HTTP STATUS: " + code);
+
+            if( code != HttpServletResponse.SC_CREATED && code != HttpServletResponse.SC_ACCEPTED && code != HttpServletResponse.SC_NO_CONTENT ) {
+                std.error(label + "(): Expected CREATED, ACCEPTED, or NO CONTENT for PUT request, got " + code);
+                HttpEntity body = response.getEntity();
+                String json = null;
+
+                if( body != null ) {
+                    try {
+                        json = EntityUtils.toString(body);
+
+                        if( wire.isDebugEnabled() ) {
+                            wire.debug(json);
+                            wire.debug("");
+                        }
+                    }
+                    catch( IOException e ) {
+                        throw new CloudException(e);
+                    }
+                }
+                RackspaceException.ExceptionItems items = (json == null ? null : RackspaceException.parseException(code, json));
+
+                if( items == null ) {
+                    items = new RackspaceException.ExceptionItems();
+                    items.code = code;
+                    items.type = CloudErrorType.COMMUNICATION;
+                    items.message = (code == 422 ? "checksumMismatch" : "uploadFailed");
+                    items.details = "Unable to upload " + resource;
+                }
+                std.error(label + "(): [" +  code + " : " + items.message + "] " + items.details);
+                throw new RackspaceException(items);
+            }
+            consume(response);
+
+            Header header = response.getFirstHeader("ETag");
+
+            return (header == null ? null : unquote(header.getValue()));
+        }
+        finally {
+            if( std.isTraceEnabled() ) {
+                std.trace("exit - " + AbstractMethod.class.getName() + "." + label + "()");
+            }
+            if( wire.isDebugEnabled() ) {
+                wire.debug("");
+                wire.debug("---------------------------------------------------------------------------------" + endpoint + resource);
+            }
+        }
+    }
+
+    /**
+     * Uploads a file, or a region of one, with an exact <code>Content-Length</code>. The file is read once up front
+     * so that its MD5 goes out as the ETag: the server then refuses a body that arrives damaged, leaving any
+     * existing copy of the object in place, rather than storing it.
+     * @return the ETag of the stored object
+     * @throws CloudException the request failed or the server did not store what was sent
+     */
+    protected @Nonnull String putFile(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource, @Nonnull FileSegmentEntity entity) throws CloudException, InternalException {
+        String md5Hash;
+
+        try {
+            md5Hash = entity.computeDigest();
+        }
+        catch( IOException e ) {
+            throw new InternalException(e);
+        }
+        String etag = putEntity(authToken, endpoint, resource, entity, md5Hash, "putFile");
+
+        if( etag != null && !etag.equalsIgnoreCase(md5Hash) ) {
+            throw new CloudException(CloudErrorType.COMMUNICATION, 422, "checksumMismatch", "MD5 hash values do not match for " + resource + ", probably data corruption: " + etag + " != " + md5Hash);
+        }
+        return md5Hash;
+    }
+
     protected @Nullable String putHeaders(@Nonnull String authToken, @Nonnull String endpoint, @Nonnull String resource, @Nonnull Map<String,String> customHeaders) throws CloudException, InternalException {
         Logger std = RackspaceCloud.getLogger(RackspaceCloud.class, "std");
         Logger wire = RackspaceCloud.getLogger(RackspaceCloud.class, "wire");
@@ -1001,10 +1671,11 @@ public abstract class AbstractMethod {
             wire.debug("");
         }
         try {
-            HttpClient client = getClient();
             HttpPut put = new HttpPut(endpoint + resource);
             
-            put.addHeader("Content-Type", "application/json");
+            if( customHeaders == null || !customHeaders.containsKey("Content-Type") ) {
+                put.addHeader("Content-Type", "application/json");
+            }
             put.addHeader("X-Auth-Token", authToken);
             if( customHeaders != null ) {
                 for( Map.Entry<String, String> entry : customHeaders.entrySet() ) {
@@ -1014,30 +1685,7 @@ public abstract class AbstractMethod {
                 }
             }
 
-            if( wire.isDebugEnabled() ) {
-                wire.debug(put.getRequestLine().toString());
-                for( Header header : put.getAllHeaders() ) {
-                    wire.debug(header.getName() + ": " + header.getValue());
-                }
-                wire.debug("");
-            }
-            HttpResponse response;
-
-            try {
-                response = client.execute(put);
-                if( wire.isDebugEnabled() ) {
-                    wire.debug(response.getStatusLine().toString());
-                    for( Header header : response.getAllHeaders() ) {
-                        wire.debug(header.getName() + ": " + header.getValue());
-                    }
-                    wire.debug("");
-                }
-            }
-            catch( IOException e ) {
-                std.error("I/O error from server communications: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
-            }
+            HttpResponse response = execute(put, null);
             int code = response.getStatusLine().getStatusCode();
 
             std.debug("HTTP STATUS: " + code);
@@ -1094,6 +1742,9 @@ public abstract class AbstractMethod {
                         return json;
                     }
                 }
+                else {
+                    consume(response);
+                }
                 return null;
             }
         }
@@ -1120,7 +1771,6 @@ public abstract class AbstractMethod {
             wire.debug("");
         }
         try {
-            HttpClient client = getClient();
             HttpPut put = new HttpPut(endpoint + resource);
             
             put.addHeader("Content-Type", "application/json");
@@ -1129,34 +1779,7 @@ public abstract class AbstractMethod {
             if( payload != null ) {
                 put.setEntity(new StringEntity(payload, ContentType.APPLICATION_JSON));
             }
-            if( wire.isDebugEnabled() ) {
-                wire.debug(put.getRequestLine().toString());
-                for( Header header : put.getAllHeaders() ) {
-                    wire.debug(header.getName() + ": " + header.getValue());
-                }
-                wire.debug("");
-                if( payload != null ) {
-                    wire.debug(payload);
-                    wire.debug("");
-                }
-            }
-            HttpResponse response;
-
-            try {
-                response = client.execute(put);
-                if( wire.isDebugEnabled() ) {
-                    wire.debug(response.getStatusLine().toString());
-                    for( Header header : response.getAllHeaders() ) {
-                        wire.debug(header.getName() + ": " + header.getValue());
-                    }
-                    wire.debug("");
-                }
-            }
-            catch( IOException e ) {
-                std.error("I/O error from server communications: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
-            }
+            HttpResponse response = execute(put, payload);
             int code = response.getStatusLine().getStatusCode();
 
             std.debug("HTTP STATUS: " + code);
@@ -1213,6 +1836,9 @@ public abstract class AbstractMethod {
                         return json;
                     }
                 }
+                else {
+                    consume(response);
+                }
                 return null;
             }
         }
@@ -1239,7 +1865,6 @@ public abstract class AbstractMethod {
             wire.debug("");
         }
         try {
-            HttpClient client = getClient();
             HttpPut put = new HttpPut(endpoint + resource);
             
             put.addHeader("Content-Type", "application/octet-stream");
@@ -1249,31 +1874,7 @@ public abstract class AbstractMethod {
             }
             put.setEntity(new InputStreamEntity(stream, -1, ContentType.APPLICATION_OCTET_STREAM));
 
-            if( wire.isDebugEnabled() ) {
-                wire.debug(put.getRequestLine().toString());
-                for( Header header : put.getAllHeaders() ) {
-                    wire.debug(header.getName() + ": " + header.getValue());
-                }
-                wire.debug("");
-                wire.debug("--> BINARY DATA <--");
-            }
-            HttpResponse response;
-
-            try {
-                response = client.execute(put);
-                if( wire.isDebugEnabled() ) {
-                    wire.debug(response.getStatusLine().toString());
-                    for( Header header : response.getAllHeaders() ) {
-                        wire.debug(header.getName() + ": " + header.getValue());
-                    }
-                    wire.debug("");
-                }
-            }
-            catch( IOException e ) {
-                std.error("I/O error from server communications: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
-            }
+            HttpResponse response = execute(put, "--> BINARY DATA <--");
             int code = response.getStatusLine().getStatusCode();
 
             std.debug("HTTP STATUS: " + code);
@@ -1286,6 +1887,7 @@ public abstract class AbstractMethod {
                 }
             }
             if( responseHash != null && md5Hash != null && !responseHash.equals(md5Hash) ) {
+                consume(response);
                 throw new CloudException("MD5 hash values do not match, probably data corruption");
             }
             if( code != HttpServletResponse.SC_CREATED && code != HttpServletResponse.SC_ACCEPTED && code != HttpServletResponse.SC_NO_CONTENT ) {
@@ -1340,6 +1942,9 @@ public abstract class AbstractMethod {
                         return json;
                     }
                 }
+                else {
+                    consume(response);
+                }
                 return null;
             }
         }
@@ -1353,4 +1958,12 @@ public abstract class AbstractMethod {
             }               
         }
     }
+
+    protected @Nonnull Future<String> putStreamAsync(@Nonnull final String authToken, @Nonnull final String endpoint, @Nonnull final String resource, @Nullable final String md5Hash, @Nullable final InputStream stream) throws CloudException {
+        return submit(new Callable<String>() {
+            public String call() throws CloudException, InternalException {
+                return putStream(authToken, endpoint, resource, md5Hash, stream);
+            }
+        });
+    }
 }
@@ -20,6 +20,8 @@ package org.dasein.cloud.rackspace;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
@@ -44,12 +46,28 @@ public class CDNMethod extends AbstractMethod {
             throw new CloudException("Invalid JSON from server: " + e.getMessage());
         }
     }
+
+    public Future<JSONArray> getAsync() throws CloudException {
+        return submit(new Callable<JSONArray>() {
+            public JSONArray call() throws CloudException, InternalException {
+                return get();
+            }
+        });
+    }
     
     public Map<String,String> head(String container) throws CloudException, InternalException {
         AuthenticationContext context = provider.getAuthenticationContext();
         
         return head(context.getStorageToken(), context.getCdnUrl(), "/" + container);        
     }
+
+    public Future<Map<String,String>> headAsync(final String container) throws CloudException {
+        return submit(new Callable<Map<String,String>>() {
+            public Map<String,String> call() throws CloudException, InternalException {
+                return head(container);
+            }
+        });
+    }
     
     public void post(String container, boolean enabled) throws CloudException, InternalException {
         HashMap<String,String> customHeaders = new HashMap<String,String>();
@@ -60,6 +78,15 @@ public class CDNMethod extends AbstractMethod {
        
         putHeaders(context.getStorageToken(), context.getCdnUrl(), "/" + container, customHeaders);
     }
+
+    public Future<Void> postAsync(final String container, final boolean enabled) throws CloudException {
+        return submit(new Callable<Void>() {
+            public Void call() throws CloudException, InternalException {
+                post(container, enabled);
+                return null;
+            }
+        });
+    }
     
     public void put(String container) throws CloudException, InternalException {
         HashMap<String,String> customHeaders = new HashMap<String,String>();
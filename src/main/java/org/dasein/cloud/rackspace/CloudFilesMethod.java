@@ -19,51 +19,151 @@
 package org.dasein.cloud.rackspace;
 
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 public class CloudFilesMethod extends AbstractMethod {
+    static public final int BULK_DELETE_LIMIT = 10000;
+    static public final int LIST_LIMIT        = 10000;
+
     public CloudFilesMethod(RackspaceCloud provider) { super(provider); }
         
+    /**
+     * Deletes many objects in one request through the Swift bulk delete middleware.
+     * @param paths the objects to delete, each in the form <code>container/object</code>, at most {@link #BULK_DELETE_LIMIT}
+     * @return the JSON summary of the deletion, or null if the account does not support bulk deletes
+     */
+    public JSONObject bulkDelete(List<String> paths) throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+        StringBuilder payload = new StringBuilder();
+
+        for( String path : paths ) {
+            int idx = path.indexOf('/');
+
+            payload.append("/");
+            if( idx < 0 ) {
+                payload.append(encode(path));
+            }
+            else {
+                payload.append(encode(path.substring(0, idx))).append("/").append(encode(path.substring(idx+1)));
+            }
+            payload.append("\n");
+        }
+        String response;
+
+        try {
+            response = postText(context.getStorageToken(), context.getStorageUrl(), "/?bulk-delete", payload.toString());
+        }
+        finally {
+            for( String path : paths ) {
+                int idx = path.indexOf('/');
+
+                if( idx > 0 ) {
+                    invalidate(path.substring(0, idx), path.substring(idx+1));
+                }
+            }
+        }
+
+        if( response == null ) {
+            // without the middleware the request is an ordinary account POST
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(response);
+
+            return (json.has("Number Deleted") ? json : null);
+        }
+        catch( JSONException e ) {
+            return null;
+        }
+    }
+
+    public void copy(String sourceBucket, String sourceObject, String targetBucket, String targetObject) throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+
+        try {
+            copy(context.getStorageToken(), context.getStorageUrl(), "/" + sourceBucket + "/" + sourceObject, targetBucket + "/" + targetObject);
+        }
+        finally {
+            invalidate(targetBucket, targetObject);
+        }
+    }
+
     public void delete(String bucket) throws CloudException, InternalException {
         AuthenticationContext context = provider.getAuthenticationContext();
         
         delete(context.getStorageToken(), context.getStorageUrl(), "/" + bucket);
+        provider.getObjectMetadataCache().invalidateBucket(bucket);
     }
     
     public void delete(String bucket, String object) throws CloudException, InternalException {
         AuthenticationContext context = provider.getAuthenticationContext();
         
-        delete(context.getStorageToken(), context.getStorageUrl(), "/" + bucket + "/" + object);
+        try {
+            delete(context.getStorageToken(), context.getStorageUrl(), "/" + bucket + "/" + object);
+        }
+        finally {
+            invalidate(bucket, object);
+        }
+    }
+
+    public Future<Void> deleteAsync(final String bucket, final String object) throws CloudException {
+        return submit(new Callable<Void>() {
+            public Void call() throws CloudException, InternalException {
+                delete(bucket, object);
+                return null;
+            }
+        });
     }
     
     public List<String> get(String bucket) throws CloudException, InternalException {
-        AuthenticationContext context = provider.getAuthenticationContext();
-        
-        String response = getString(context.getStorageToken(), context.getStorageUrl(), bucket == null ? "/" : "/" + bucket);
         ArrayList<String> entries = new ArrayList<String>();
+        String marker = null;
 
-        if( response != null ) {
-            response = response.trim();
-            if( response.length() > 0 ) {
-                String[] lines = response.split("\n");
-                
-                if( lines.length < 1 ) {
-                    entries.add(response);
-                }
-                else {
-                    for( String line : lines ) {
-                        entries.add(line.trim());
+        // pages through the listing so that accounts or containers beyond the page limit are not truncated
+        while( true ) {
+            JSONArray page = list(bucket, marker);
+
+            if( page == null || page.length() < 1 ) {
+                return entries;
+            }
+            try {
+                for( int i=0; i<page.length(); i++ ) {
+                    JSONObject item = page.getJSONObject(i);
+
+                    if( item.has("name") ) {
+                        marker = item.getString("name");
+                        entries.add(marker);
                     }
                 }
+            }
+            catch( JSONException e ) {
+                throw new CloudException(e);
+            }
+            if( page.length() < LIST_LIMIT ) {
+                return entries;
+            }
+        }
+    }
 
+    public Future<List<String>> getAsync(final String bucket) throws CloudException {
+        return submit(new Callable<List<String>>() {
+            public List<String> call() throws CloudException, InternalException {
+                return get(bucket);
             }
-        }        
-        return entries;
+        });
     }
 
     public InputStream get(String bucket, String object) throws CloudException, InternalException {
@@ -72,7 +172,33 @@ public class CloudFilesMethod extends AbstractMethod {
         return getStream(context.getStorageToken(), context.getStorageUrl(), "/" + bucket + "/" + object);
     }
 
-    @SuppressWarnings("unused")
+    public InputStream get(String bucket, String object, long first, long last, String etag) throws CloudException, InternalException {
+        return get(bucket, object, first, last, etag, null);
+    }
+
+    public InputStream get(String bucket, String object, long first, long last, String etag, Map<String,String> headers) throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+
+        return getRange(context.getStorageToken(), context.getStorageUrl(), "/" + bucket + "/" + object, first, last, etag, headers);
+    }
+
+    public Future<InputStream> getAsync(final String bucket, final String object) throws CloudException {
+        return submit(new Callable<InputStream>() {
+            public InputStream call() throws CloudException, InternalException {
+                return get(bucket, object);
+            }
+        });
+    }
+
+    static String encode(String value) throws InternalException {
+        try {
+            return URLEncoder.encode(value, "utf-8").replaceAll("\\+", "%20");
+        }
+        catch( UnsupportedEncodingException e ) {
+            throw new InternalException(e);
+        }
+    }
+
     public Map<String,String> head(String bucket) throws CloudException, InternalException {
         AuthenticationContext context = provider.getAuthenticationContext();
         
@@ -84,7 +210,91 @@ public class CloudFilesMethod extends AbstractMethod {
         
         return head(context.getStorageToken(), context.getStorageUrl(), "/" + bucket + "/" + object);        
     }
+
+    /**
+     * Fetches the metadata of an object unless it still matches the specified ETag.
+     * @return the metadata, an empty map if the object still matches <code>etag</code>, or null if it does not exist
+     */
+    public Map<String,String> headIfChanged(String bucket, String object, String etag) throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+
+        return head(context.getStorageToken(), context.getStorageUrl(), "/" + bucket + "/" + object, etag);
+    }
+
+    public Future<Map<String,String>> headAsync(final String bucket, final String object) throws CloudException {
+        return submit(new Callable<Map<String,String>>() {
+            public Map<String,String> call() throws CloudException, InternalException {
+                return head(bucket, object);
+            }
+        });
+    }
     
+    private void invalidate(String bucket, String object) throws CloudException {
+        provider.getObjectMetadataCache().invalidate(bucket, object);
+    }
+
+    public JSONArray list(String bucket, String marker) throws CloudException, InternalException {
+        return list(bucket, marker, null, null, null, LIST_LIMIT);
+    }
+
+    /**
+     * Lists a page of the containers in the account, or of the objects in a container, in the JSON format.
+     * Object entries describe the size, hash, last modified time and content type of each object so that no
+     * per-object HEAD is needed; with a delimiter, nested names are rolled up into <code>subdir</code> entries.
+     * @param bucket the container to list, or null to list the containers in the account
+     * @param marker the name after which the page starts, or null for the first page
+     * @param endMarker the name before which the page ends, or null for no upper bound
+     * @param prefix only list names starting with this prefix, or null for all names
+     * @param delimiter the character at which names are rolled up, or null for a flat listing
+     * @param limit the maximum number of entries in the page, at most {@link #LIST_LIMIT}
+     * @return the page, or null if the container does not exist
+     */
+    public JSONArray list(String bucket, String marker, String endMarker, String prefix, String delimiter, int limit) throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+        StringBuilder resource = new StringBuilder();
+
+        resource.append("/");
+        if( bucket != null ) {
+            resource.append(bucket);
+        }
+        resource.append("?format=json&limit=").append(limit < 1 || limit > LIST_LIMIT ? LIST_LIMIT : limit);
+        if( marker != null ) {
+            resource.append("&marker=").append(encode(marker));
+        }
+        if( endMarker != null ) {
+            resource.append("&end_marker=").append(encode(endMarker));
+        }
+        if( prefix != null ) {
+            resource.append("&prefix=").append(encode(prefix));
+        }
+        if( delimiter != null ) {
+            resource.append("&delimiter=").append(encode(delimiter));
+        }
+        String response = getString(context.getStorageToken(), context.getStorageUrl(), resource.toString());
+
+        if( response == null ) {
+            return null;
+        }
+        response = response.trim();
+        if( response.length() < 1 ) {
+            return new JSONArray();
+        }
+        try {
+            return new JSONArray(response);
+        }
+        catch( JSONException e ) {
+            throw new CloudException(e);
+        }
+    }
+
+    public Future<JSONArray> listAsync(final String bucket, final String marker, final String endMarker, final String prefix, final String delimiter, final int limit) throws CloudException {
+        return submit(new Callable<JSONArray>() {
+            public JSONArray call() throws CloudException, InternalException {
+                return list(bucket, marker, endMarker, prefix, delimiter, limit);
+            }
+        });
+    }
+
     public void put(String bucket) throws CloudException, InternalException {
         AuthenticationContext context = provider.getAuthenticationContext();
         
@@ -94,6 +304,70 @@ public class CloudFilesMethod extends AbstractMethod {
     public void put(String bucket, String object, String md5Hash, InputStream payload) throws CloudException, InternalException {
         AuthenticationContext context = provider.getAuthenticationContext();
         
-        putStream(context.getStorageToken(), context.getStorageUrl(), "/" + bucket + "/" + object, md5Hash, payload);
+        try {
+            putStream(context.getStorageToken(), context.getStorageUrl(), "/" + bucket + "/" + object, md5Hash, payload);
+        }
+        finally {
+            invalidate(bucket, object);
+        }
+    }
+
+    /**
+     * Uploads content held in memory as the specified object, without touching the file system.
+     * @param contentType the content type, including any charset, to store with the object
+     * @return the verified ETag of the stored object
+     */
+    public String put(String bucket, String object, byte[] content, String contentType) throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+
+        try {
+            return putBytes(context.getStorageToken(), context.getStorageUrl(), "/" + bucket + "/" + object, content, contentType);
+        }
+        finally {
+            invalidate(bucket, object);
+        }
+    }
+
+    /**
+     * Uploads a file, or a region of one, as the specified object.
+     * @return the verified ETag of the stored object
+     */
+    public String put(String bucket, String object, FileSegmentEntity entity) throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+
+        try {
+            return putFile(context.getStorageToken(), context.getStorageUrl(), "/" + bucket + "/" + object, entity);
+        }
+        finally {
+            invalidate(bucket, object);
+        }
+    }
+
+    public Future<Void> putAsync(final String bucket, final String object, final String md5Hash, final InputStream payload) throws CloudException {
+        return submit(new Callable<Void>() {
+            public Void call() throws CloudException, InternalException {
+                put(bucket, object, md5Hash, payload);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Publishes a manifest that presents every object whose name starts with the segment prefix, in name order,
+     * as the content of a single object.
+     * @param segments the segment location in the form <code>container/prefix</code>
+     */
+    public void putManifest(String bucket, String object, String segments) throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+        HashMap<String,String> headers = new HashMap<String, String>();
+
+        headers.put("Content-Type", "application/octet-stream");
+        headers.put("X-Object-Manifest", segments);
+        try {
+            putHeaders(context.getStorageToken(), context.getStorageUrl(), "/" + bucket + "/" + object, headers);
+        }
+        finally {
+            invalidate(bucket, object);
+        }
     }
 }
@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.rackspace;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.log4j.Logger;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.util.CalendarWrapper;
+
+/**
+ * Provider-scoped pool of persistent HTTP connections shared by every {@link AbstractMethod} call made
+ * through a single {@link RackspaceCloud} instance. Limits and timeouts may be tuned through the custom
+ * properties of the provider context: <code>maxConnections</code>, <code>maxConnectionsPerRoute</code>,
+ * <code>connectionKeepAlive</code> and <code>connectionIdleTimeout</code> (both in seconds).
+ */
+public class ConnectionPool {
+    static public final int  DEFAULT_MAX_CONNECTIONS           = 100;
+    static public final int  DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 25;
+    static public final long DEFAULT_KEEP_ALIVE                = 30 * CalendarWrapper.SECOND;
+    static public final long DEFAULT_IDLE_TIMEOUT              = 60 * CalendarWrapper.SECOND;
+
+    static private final long EVICTION_INTERVAL = 5 * CalendarWrapper.SECOND;
+
+    private DefaultHttpClient              client;
+    private volatile boolean               closed;
+    private Thread                         evictor;
+    private long                           idleTimeout;
+    private PoolingClientConnectionManager manager;
+
+    private final ThreadLocal<Long> leaseWait = new ThreadLocal<Long>() {
+        @Override
+        protected Long initialValue() {
+            return 0L;
+        }
+    };
+
+    public ConnectionPool(@Nonnull ProviderContext ctx) {
+        Properties p = ctx.getCustomProperties();
+        String endpoint = ctx.getEndpoint();
+        boolean ssl = (endpoint != null && endpoint.startsWith("https"));
+        HttpParams params = new BasicHttpParams();
+
+        HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+        //noinspection deprecation
+        HttpProtocolParams.setContentCharset(params, HTTP.UTF_8);
+        HttpProtocolParams.setUserAgent(params, "Dasein Cloud");
+
+        if( p != null ) {
+            String proxyHost = p.getProperty("proxyHost");
+            String proxyPort = p.getProperty("proxyPort");
+
+            if( proxyHost != null ) {
+                int port = 0;
+
+                if( proxyPort != null && proxyPort.length() > 0 ) {
+                    port = Integer.parseInt(proxyPort);
+                }
+                params.setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(proxyHost, port, ssl ? "https" : "http"));
+            }
+        }
+        final long keepAlive = RackspaceCloud.getLongProperty(p, "connectionKeepAlive", DEFAULT_KEEP_ALIVE/CalendarWrapper.SECOND) * CalendarWrapper.SECOND;
+
+        idleTimeout = RackspaceCloud.getLongProperty(p, "connectionIdleTimeout", DEFAULT_IDLE_TIMEOUT/CalendarWrapper.SECOND) * CalendarWrapper.SECOND;
+        manager = new PoolingClientConnectionManager(SchemeRegistryFactory.createDefault()) {
+            @Override
+            public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+                final ClientConnectionRequest request = super.requestConnection(route, state);
+
+                return new ClientConnectionRequest() {
+                    public ManagedClientConnection getConnection(long timeout, TimeUnit unit) throws InterruptedException, ConnectionPoolTimeoutException {
+                        long start = System.currentTimeMillis();
+
+                        try {
+                            return request.getConnection(timeout, unit);
+                        }
+                        finally {
+                            leaseWait.set(leaseWait.get() + (System.currentTimeMillis() - start));
+                        }
+                    }
+
+                    public void abortRequest() {
+                        request.abortRequest();
+                    }
+                };
+            }
+        };
+        manager.setMaxTotal((int)RackspaceCloud.getLongProperty(p, "maxConnections", DEFAULT_MAX_CONNECTIONS));
+        manager.setDefaultMaxPerRoute((int)RackspaceCloud.getLongProperty(p, "maxConnectionsPerRoute", DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+        client = new DefaultHttpClient(manager, params);
+        client.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long duration = super.getKeepAliveDuration(response, context);
+
+                // the server did not tell us how long it will keep the connection, so do not trust it forever
+                if( duration <= 0L || duration > keepAlive ) {
+                    return keepAlive;
+                }
+                return duration;
+            }
+        });
+        evictor = new Thread() {
+            public void run() {
+                evict();
+            }
+        };
+        evictor.setName("Rackspace Connection Evictor");
+        evictor.setDaemon(true);
+        evictor.start();
+    }
+
+    public void close() {
+        Logger logger = RackspaceCloud.getLogger(ConnectionPool.class, "std");
+
+        if( closed ) {
+            return;
+        }
+        closed = true;
+        evictor.interrupt();
+        if( logger.isDebugEnabled() ) {
+            logger.debug("close(): Shutting down connection pool " + getTotalStats());
+        }
+        manager.shutdown();
+    }
+
+    private void evict() {
+        while( !closed ) {
+            try { Thread.sleep(EVICTION_INTERVAL); }
+            catch( InterruptedException e ) { return; }
+            if( !closed ) {
+                manager.closeExpiredConnections();
+                manager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    public @Nonnull HttpClient getClient() {
+        return client;
+    }
+
+    public @Nonnull PoolStats getTotalStats() {
+        return manager.getTotalStats();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the milliseconds the calling thread has spent waiting to lease connections since the last call
+     */
+    public long takeLeaseWait() {
+        long wait = leaseWait.get();
+
+        leaseWait.set(0L);
+        return wait;
+    }
+}
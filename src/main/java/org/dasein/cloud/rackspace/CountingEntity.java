@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Entity wrapper that reports every chunk of the body as it is read or written, whichever way the entity
+ * is being used.
+ */
+public abstract class CountingEntity extends HttpEntityWrapper {
+    public CountingEntity(@Nonnull HttpEntity entity) {
+        super(entity);
+    }
+
+    protected abstract void counted(long bytes);
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new FilterInputStream(wrappedEntity.getContent()) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+
+                if( b != -1 ) {
+                    counted(1L);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int count = super.read(buffer, offset, length);
+
+                if( count > 0 ) {
+                    counted(count);
+                }
+                return count;
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        wrappedEntity.writeTo(new FilterOutputStream(output) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                counted(1L);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                out.write(buffer, offset, length);
+                counted(length);
+            }
+        });
+    }
+}
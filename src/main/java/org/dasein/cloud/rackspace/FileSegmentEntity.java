@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Repeatable request body holding a region of a file, so that a large file can be uploaded as several
+ * segments of known length. The MD5 of the region can be worked out before it is sent, so that the server
+ * can verify the body against it, and the MD5 of the bytes actually written is kept as well.
+ */
+public class FileSegmentEntity extends AbstractHttpEntity {
+    static public final int BUFFER_SIZE = 256 * 1024;
+
+    private String digest;
+    private File   file;
+    private long   length;
+    private long   offset;
+    private long   written;
+
+    public FileSegmentEntity(@Nonnull File file, @Nonnegative long offset, @Nonnegative long length) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        setContentType(ContentType.APPLICATION_OCTET_STREAM.toString());
+    }
+
+    static public @Nonnull String toHex(@Nonnull byte[] bytes) {
+        StringBuilder str = new StringBuilder();
+
+        for( byte b : bytes ) {
+            str.append(Character.forDigit((b >> 4) & 0xf, 16));
+            str.append(Character.forDigit(b & 0xf, 16));
+        }
+        return str.toString();
+    }
+
+    public @Nonnull InputStream getContent() throws IOException {
+        final FileInputStream input = new FileInputStream(file);
+
+        if( input.skip(offset) < offset ) {
+            input.close();
+            throw new IOException("File " + file + " is shorter than " + offset + " bytes");
+        }
+        return new FilterInputStream(input) {
+            private long remaining = length;
+
+            @Override
+            public int read() throws IOException {
+                if( remaining < 1 ) {
+                    return -1;
+                }
+                int b = super.read();
+
+                if( b > -1 ) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(@Nonnull byte[] buffer, int off, int len) throws IOException {
+                if( remaining < 1 ) {
+                    return -1;
+                }
+                int n = super.read(buffer, off, (int)Math.min(len, remaining));
+
+                if( n > 0 ) {
+                    remaining -= n;
+                }
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Reads the region through once without sending it.
+     * @return the hex MD5 of the region as it is on disk now
+     * @throws IOException the file could not be read
+     */
+    public @Nonnull String computeDigest() throws IOException {
+        return copy(null);
+    }
+
+    private @Nonnull String copy(@Nullable OutputStream output) throws IOException {
+        MessageDigest md5;
+
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        }
+        catch( NoSuchAlgorithmException e ) {
+            throw new IOException(e.getMessage());
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = offset;
+            long end = offset + length;
+
+            while( position < end ) {
+                buffer.clear();
+                if( end - position < buffer.capacity() ) {
+                    buffer.limit((int)(end - position));
+                }
+                int n = channel.read(buffer, position);
+
+                if( n < 0 ) {
+                    throw new IOException("File " + file + " ended " + (end - position) + " bytes early");
+                }
+                md5.update(buffer.array(), 0, n);
+                position += n;
+                if( output != null ) {
+                    output.write(buffer.array(), 0, n);
+                    written += n;
+                    transferred(n);
+                }
+            }
+            if( output != null ) {
+                output.flush();
+            }
+        }
+        finally {
+            raf.close();
+        }
+        return toHex(md5.digest());
+    }
+
+    public long getContentLength() {
+        return length;
+    }
+
+    /**
+     * @return the hex MD5 of the bytes sent by the last complete {@link #writeTo(OutputStream)}, or null if none completed
+     */
+    public @Nullable String getDigest() {
+        return digest;
+    }
+
+    public @Nonnull File getFile() {
+        return file;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * Called as bytes are written to the connection. When the request is sent again, it is first called with
+     * the negated count of the bytes written by the earlier attempt so that totals stay accurate.
+     * @param bytes the number of bytes written since the last call
+     */
+    protected void transferred(long bytes) {
+        // subclasses may track progress
+    }
+
+    public void writeTo(@Nonnull OutputStream output) throws IOException {
+        if( written > 0L ) {
+            transferred(-written);
+            written = 0L;
+        }
+        digest = null;
+        digest = copy(output);
+    }
+}
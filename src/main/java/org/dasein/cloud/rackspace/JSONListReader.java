@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.InternalException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Pull parser for list responses such as <code>{"servers":[{...},{...}]}</code> that reads one element of the
+ * named list at a time straight off the response stream, so a listing never has to be held in memory whole.
+ * Members other than the list are skipped. Always {@link #close()} the reader to release the connection. A reader
+ * can also walk a document that has already been parsed, as listings served from the {@link ResponseCache} are.
+ */
+public class JSONListReader {
+    private boolean     done;
+    private InputStream input;
+    private int         index;
+    private boolean     inList;
+    private JSONArray   list;
+    private String      listName;
+    private JSONTokener tokener;
+
+    public JSONListReader(@Nonnull InputStream input, @Nonnull String listName) throws InternalException {
+        this.input = input;
+        this.listName = listName;
+        try {
+            tokener = new JSONTokener(new InputStreamReader(input, "utf-8"));
+        }
+        catch( UnsupportedEncodingException e ) {
+            throw new InternalException(e);
+        }
+    }
+
+    /**
+     * Walks the named list of a document that has already been parsed. The document is only read, never modified,
+     * so it may be one shared through the {@link ResponseCache}.
+     */
+    public JSONListReader(@Nonnull JSONObject document, @Nonnull String listName) {
+        this.listName = listName;
+        list = document.optJSONArray(listName);
+        done = (list == null);
+    }
+
+    public void close() {
+        done = true;
+        if( input == null ) {
+            return;
+        }
+        try {
+            input.close();
+        }
+        catch( IOException e ) {
+            RackspaceCloud.getLogger(JSONListReader.class, "std").warn("close(): Failed to close response stream: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the next element of the list, or null once the list is exhausted
+     */
+    public @Nullable JSONObject next() throws JSONException {
+        if( done ) {
+            return null;
+        }
+        if( list != null ) {
+            if( index >= list.length() ) {
+                done = true;
+                return null;
+            }
+            return list.getJSONObject(index++);
+        }
+        char c;
+
+        if( !inList ) {
+            if( !seek() ) {
+                done = true;
+                return null;
+            }
+            inList = true;
+            c = tokener.nextClean();
+            if( c == ']' ) {
+                done = true;
+                return null;
+            }
+            tokener.back();
+        }
+        else {
+            c = tokener.nextClean();
+            if( c == ']' ) {
+                done = true;
+                return null;
+            }
+            if( c != ',' ) {
+                throw tokener.syntaxError("Expected a ',' or ']' in " + listName);
+            }
+        }
+        Object value = tokener.nextValue();
+
+        if( !(value instanceof JSONObject) ) {
+            throw tokener.syntaxError("Expected an object in " + listName);
+        }
+        return (JSONObject)value;
+    }
+
+    private boolean seek() throws JSONException {
+        if( tokener.nextClean() != '{' ) {
+            throw tokener.syntaxError("A JSON object text must begin with '{'");
+        }
+        while( true ) {
+            char c = tokener.nextClean();
+
+            switch( c ) {
+                case 0: throw tokener.syntaxError("A JSON object text must end with '}'");
+                case '}': return false;
+                case ',': continue;
+                default: tokener.back();
+            }
+            String key = tokener.nextValue().toString();
+
+            if( tokener.nextClean() != ':' ) {
+                throw tokener.syntaxError("Expected a ':' after a key");
+            }
+            if( key.equals(listName) ) {
+                if( tokener.nextClean() != '[' ) {
+                    throw tokener.syntaxError("Expected an array for " + listName);
+                }
+                return true;
+            }
+            // skip over anything that is not the list itself
+            tokener.nextValue();
+        }
+    }
+}
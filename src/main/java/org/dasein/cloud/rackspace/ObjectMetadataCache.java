@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.rackspace;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.ProviderContext;
+import org.dasein.util.CalendarWrapper;
+
+/**
+ * Opt-in cache of Cloud Files object metadata that saves a HEAD request on repeated lookups of the same object.
+ * Entries are keyed by account, container and object, expire after a fixed time and are evicted least recently
+ * used first. An expired entry that carries an ETag is revalidated with <code>If-None-Match</code> rather than
+ * dropped. Writes made through {@link CloudFilesMethod} invalidate the objects they touch. Turn it on with
+ * <code>objectCache=true</code>, bound it with <code>objectCacheSize</code> (entries) and set the lifetime of an
+ * entry with <code>objectCacheTtl</code> (seconds).
+ */
+public class ObjectMetadataCache {
+    static public final int  DEFAULT_SIZE = 1000;
+    static public final long DEFAULT_TTL  = 60 * CalendarWrapper.SECOND;
+
+    static public class Entry {
+        private String             etag;
+        private volatile long      expiration;
+        private Map<String,String> metaData;
+
+        private Entry(@Nonnull Map<String,String> metaData, long expiration) {
+            TreeMap<String,String> copy = new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
+
+            copy.putAll(metaData);
+            this.metaData = Collections.unmodifiableMap(copy);
+            this.etag = AbstractMethod.unquote(copy.get("ETag"));
+            this.expiration = expiration;
+        }
+
+        public @Nullable String getETag() {
+            return etag;
+        }
+
+        public @Nonnull Map<String,String> getMetaData() {
+            return metaData;
+        }
+
+        public boolean isExpired() {
+            return (System.currentTimeMillis() >= expiration);
+        }
+    }
+
+    private String            account;
+    private boolean           enabled;
+    private Map<String,Entry> entries;
+    private AtomicLong        hits = new AtomicLong(0L);
+    private AtomicLong        misses = new AtomicLong(0L);
+    private AtomicLong        revalidations = new AtomicLong(0L);
+    private long              ttl;
+
+    public ObjectMetadataCache(@Nonnull ProviderContext ctx) {
+        Properties p = ctx.getCustomProperties();
+        final int maxSize = (int)RackspaceCloud.getLongProperty(p, "objectCacheSize", DEFAULT_SIZE);
+
+        account = ctx.getAccountNumber();
+        enabled = (p != null && "true".equalsIgnoreCase(p.getProperty("objectCache")));
+        ttl = RackspaceCloud.getLongProperty(p, "objectCacheTtl", DEFAULT_TTL/CalendarWrapper.SECOND) * CalendarWrapper.SECOND;
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Entry> eldest) {
+                return (size() > maxSize);
+            }
+        };
+    }
+
+    public @Nullable Entry get(@Nonnull String bucket, @Nonnull String object) {
+        if( !enabled ) {
+            return null;
+        }
+        synchronized( entries ) {
+            return entries.get(getKey(bucket, object));
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the share of lookups, between 0 and 1, answered without downloading the metadata again
+     */
+    public double getHitRatio() {
+        long answered = hits.get() + revalidations.get();
+        long total = answered + misses.get();
+
+        return (total < 1L ? 0.0 : ((double)answered)/total);
+    }
+
+    private @Nonnull String getKey(@Nonnull String bucket, @Nullable String object) {
+        return account + ":" + bucket + "/" + (object == null ? "" : object);
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getRevalidationCount() {
+        return revalidations.get();
+    }
+
+    public int getSize() {
+        synchronized( entries ) {
+            return entries.size();
+        }
+    }
+
+    public void hit() {
+        hits.incrementAndGet();
+    }
+
+    public void invalidate(@Nonnull String bucket, @Nonnull String object) {
+        if( !enabled ) {
+            return;
+        }
+        synchronized( entries ) {
+            entries.remove(getKey(bucket, object));
+        }
+    }
+
+    public void invalidateBucket(@Nonnull String bucket) {
+        if( !enabled ) {
+            return;
+        }
+        String prefix = getKey(bucket, null);
+
+        synchronized( entries ) {
+            Iterator<String> it = entries.keySet().iterator();
+
+            while( it.hasNext() ) {
+                if( it.next().startsWith(prefix) ) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void miss() {
+        misses.incrementAndGet();
+    }
+
+    public void put(@Nonnull String bucket, @Nonnull String object, @Nullable Map<String,String> metaData) {
+        if( !enabled ) {
+            return;
+        }
+        synchronized( entries ) {
+            if( metaData == null ) {
+                entries.remove(getKey(bucket, object));
+            }
+            else {
+                entries.put(getKey(bucket, object), new Entry(metaData, System.currentTimeMillis() + ttl));
+            }
+        }
+    }
+
+    /**
+     * Extends the life of an entry the cloud has confirmed to be unchanged.
+     */
+    public void revalidated(@Nonnull Entry entry) {
+        revalidations.incrementAndGet();
+        entry.expiration = System.currentTimeMillis() + ttl;
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        return "[hits=" + hits.get() + ",revalidations=" + revalidations.get() + ",misses=" + misses.get() + ",size=" + getSize() + "]";
+    }
+}
@@ -20,6 +20,13 @@ package org.dasein.cloud.rackspace;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
@@ -33,11 +40,19 @@ import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.rackspace.compute.RackspaceComputeServices;
+import org.dasein.cloud.rackspace.compute.ServerInventory;
+import org.dasein.cloud.rackspace.metrics.InMemoryMetrics;
+import org.dasein.cloud.rackspace.metrics.JmxExporter;
+import org.dasein.cloud.rackspace.metrics.MetricsCollector;
 import org.dasein.cloud.rackspace.network.RackspaceNetworkServices;
 import org.dasein.cloud.rackspace.platform.RackspacePlatformServices;
 import org.dasein.cloud.rackspace.storage.RackspaceStorageServices;
+import org.dasein.util.NamedThreadFactory;
 
 public class RackspaceCloud extends AbstractCloud {
+    static public final int DEFAULT_ASYNC_QUEUE   = 100;
+    static public final int DEFAULT_ASYNC_THREADS = 25;
+
     static private String getLastItem(String name) {
         int idx = name.lastIndexOf('.');
         
@@ -50,6 +65,26 @@ public class RackspaceCloud extends AbstractCloud {
         return name.substring(idx+1);
     }
     
+    static public long getLongProperty(@Nullable Properties p, @Nonnull String key, long def) {
+        if( p == null ) {
+            return def;
+        }
+        String value = p.getProperty(key);
+
+        if( value == null || value.trim().length() < 1 ) {
+            return def;
+        }
+        try {
+            long l = Long.parseLong(value.trim());
+
+            return (l > 0 ? l : def);
+        }
+        catch( NumberFormatException e ) {
+            getLogger(RackspaceCloud.class, "std").warn("Invalid value for " + key + ": " + value);
+            return def;
+        }
+    }
+
     static public Logger getLogger(Class<?> cls, String type) {
         String pkg = getLastItem(cls.getPackage().getName());
         
@@ -62,16 +97,90 @@ public class RackspaceCloud extends AbstractCloud {
         return Logger.getLogger("dasein.cloud.rackspace." + type + "." + pkg + getLastItem(cls.getName()));
     }
     
-    private AuthenticationContext authenticationContext;
+    private final Object authenticationLock = new Object();
+    private volatile AuthenticationContext authenticationContext;
+    private transient volatile ConnectionPool connectionPool;
+    private transient volatile ExecutorService executor;
+    private transient volatile MetricsCollector metrics;
+    private transient volatile ObjectMetadataCache objectMetadataCache;
+    private transient volatile RateLimiter rateLimiter;
+    private transient volatile ReferenceDataCache referenceDataCache;
+    private transient volatile ResponseCache responseCache;
+    private transient volatile ResponseCompression responseCompression;
+    private transient volatile RetryPolicy retryPolicy;
+    private transient volatile ServerInventory serverInventory;
     
     public RackspaceCloud() { }
     
-    public synchronized AuthenticationContext getAuthenticationContext() throws CloudException, InternalException {
-        if( authenticationContext == null ) {
+    @Override
+    public void close() {
+        try {
+            ConnectionPool pool;
+            ExecutorService threads;
+            RateLimiter limiter;
+            MetricsCollector collector;
+
+            synchronized( this ) {
+                pool = connectionPool;
+                connectionPool = null;
+                threads = executor;
+                executor = null;
+                limiter = rateLimiter;
+                rateLimiter = null;
+                collector = metrics;
+                metrics = null;
+                objectMetadataCache = null;
+                referenceDataCache = null;
+                responseCache = null;
+                responseCompression = null;
+                retryPolicy = null;
+                serverInventory = null;
+            }
+            if( collector instanceof InMemoryMetrics ) {
+                ((InMemoryMetrics)collector).close();
+            }
+            if( threads != null ) {
+                threads.shutdown();
+            }
+            if( limiter != null ) {
+                limiter.close();
+            }
+            if( pool != null ) {
+                pool.close();
+            }
+        }
+        finally {
+            super.close();
+        }
+    }
+
+    public @Nonnull AuthenticationContext getAuthenticationContext() throws CloudException, InternalException {
+        AuthenticationContext current = authenticationContext;
+
+        if( current != null ) {
+            return current;
+        }
+        return reauthenticate(null);
+    }
+
+    /**
+     * Replaces the cached authentication context after the cloud rejected the specified token. Only one thread
+     * actually authenticates; threads that were waiting on it pick up the context it established.
+     */
+    public @Nonnull AuthenticationContext reauthenticate(@Nullable String staleToken) throws CloudException, InternalException {
+        synchronized( authenticationLock ) {
+            AuthenticationContext current = authenticationContext;
+
+            if( current != null ) {
+                if( staleToken == null || (!staleToken.equals(current.getAuthToken()) && !staleToken.equals(current.getStorageToken())) ) {
+                    return current;
+                }
+                getLogger(RackspaceCloud.class, "std").info("reauthenticate(): Authentication token was rejected, authenticating again");
+            }
             RackspaceMethod method = new RackspaceMethod(this);
-            
-            authenticationContext = method.authenticate();
-            if( authenticationContext == null ) {
+
+            current = method.authenticate();
+            if( current == null ) {
                 RackspaceException.ExceptionItems items = new RackspaceException.ExceptionItems();
                 
                 items.code = HttpServletResponse.SC_UNAUTHORIZED;
@@ -80,8 +189,9 @@ public class RackspaceCloud extends AbstractCloud {
                 items.details = "The API keys failed to authentication with the specified endpoint.";
                 throw new RackspaceException(items);
             }
+            authenticationContext = current;
+            return current;
         }
-        return authenticationContext;
     }
     
     @Override
@@ -89,6 +199,244 @@ public class RackspaceCloud extends AbstractCloud {
         return "Rackspace Cloud";
     }
 
+    public @Nonnull ConnectionPool getConnectionPool() throws CloudException {
+        ConnectionPool pool = connectionPool;
+
+        if( pool == null ) {
+            synchronized( this ) {
+                pool = connectionPool;
+                if( pool == null ) {
+                    ProviderContext ctx = getContext();
+
+                    if( ctx == null ) {
+                        throw new CloudException("No context was provided for this request");
+                    }
+                    pool = new ConnectionPool(ctx);
+                    connectionPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Provides the thread pool behind the asynchronous request methods. These methods do not perform non-blocking
+     * I/O: each call still blocks one pool thread on an ordinary HTTP request for as long as it runs. The pool has
+     * <code>asyncThreads</code> threads and queues at most <code>asyncQueueSize</code> waiting calls; once the queue
+     * is full, further calls are refused with a {@link RejectedExecutionException} rather than run on the submitting
+     * thread, so an asynchronous call never turns into a blocking one and the backlog never grows without limit.
+     * Calls submitted after {@link #close()} are refused the same way.
+     */
+    public @Nonnull ExecutorService getExecutor() throws CloudException {
+        ExecutorService threads = executor;
+
+        if( threads == null ) {
+            synchronized( this ) {
+                threads = executor;
+                if( threads == null ) {
+                    ProviderContext ctx = getContext();
+
+                    if( ctx == null ) {
+                        throw new CloudException("No context was provided for this request");
+                    }
+                    int size = (int)getLongProperty(ctx.getCustomProperties(), "asyncThreads", DEFAULT_ASYNC_THREADS);
+                    final int queue = (int)getLongProperty(ctx.getCustomProperties(), "asyncQueueSize", DEFAULT_ASYNC_QUEUE);
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queue), new NamedThreadFactory(RackspaceCloud.class, "Rackspace Request"));
+
+                    pool.setRejectedExecutionHandler(new RejectedExecutionHandler() {
+                        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+                            if( e.isShutdown() ) {
+                                throw new RejectedExecutionException("The provider has been closed");
+                            }
+                            throw new RejectedExecutionException("All " + e.getMaximumPoolSize() + " request threads are busy and " + queue + " calls are already waiting");
+                        }
+                    });
+
+                    pool.allowCoreThreadTimeOut(true);
+                    threads = pool;
+                    executor = threads;
+                }
+            }
+        }
+        return threads;
+    }
+
+    public @Nonnull MetricsCollector getMetrics() throws CloudException {
+        MetricsCollector collector = metrics;
+
+        if( collector == null ) {
+            synchronized( this ) {
+                collector = metrics;
+                if( collector == null ) {
+                    ProviderContext ctx = getContext();
+
+                    if( ctx == null ) {
+                        throw new CloudException("No context was provided for this request");
+                    }
+                    Properties p = ctx.getCustomProperties();
+                    String cls = (p == null ? null : p.getProperty("metricsCollector"));
+
+                    if( cls != null && cls.trim().length() > 0 ) {
+                        try {
+                            collector = (MetricsCollector)Class.forName(cls.trim()).newInstance();
+                        }
+                        catch( Exception e ) {
+                            throw new CloudException("Unable to load metrics collector " + cls + ": " + e.getMessage());
+                        }
+                    }
+                    else if( p != null && "true".equalsIgnoreCase(p.getProperty("metricsJmx")) ) {
+                        collector = new InMemoryMetrics(new JmxExporter(ctx.getAccountNumber() + "/" + ctx.getRegionId()));
+                    }
+                    else {
+                        collector = new InMemoryMetrics(null);
+                    }
+                    metrics = collector;
+                }
+            }
+        }
+        return collector;
+    }
+
+    public @Nonnull ObjectMetadataCache getObjectMetadataCache() throws CloudException {
+        ObjectMetadataCache cache = objectMetadataCache;
+
+        if( cache == null ) {
+            synchronized( this ) {
+                cache = objectMetadataCache;
+                if( cache == null ) {
+                    ProviderContext ctx = getContext();
+
+                    if( ctx == null ) {
+                        throw new CloudException("No context was provided for this request");
+                    }
+                    cache = new ObjectMetadataCache(ctx);
+                    objectMetadataCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    public @Nonnull RateLimiter getRateLimiter() throws CloudException {
+        RateLimiter limiter = rateLimiter;
+
+        if( limiter == null ) {
+            synchronized( this ) {
+                limiter = rateLimiter;
+                if( limiter == null ) {
+                    ProviderContext ctx = getContext();
+
+                    if( ctx == null ) {
+                        throw new CloudException("No context was provided for this request");
+                    }
+                    limiter = new RateLimiter(this, ctx);
+                    rateLimiter = limiter;
+                }
+            }
+        }
+        return limiter;
+    }
+
+    public @Nonnull ReferenceDataCache getReferenceDataCache() throws CloudException {
+        ReferenceDataCache cache = referenceDataCache;
+
+        if( cache == null ) {
+            synchronized( this ) {
+                cache = referenceDataCache;
+                if( cache == null ) {
+                    ProviderContext ctx = getContext();
+
+                    if( ctx == null ) {
+                        throw new CloudException("No context was provided for this request");
+                    }
+                    cache = new ReferenceDataCache(this, ctx);
+                    referenceDataCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    public @Nonnull ResponseCache getResponseCache() throws CloudException {
+        ResponseCache cache = responseCache;
+
+        if( cache == null ) {
+            synchronized( this ) {
+                cache = responseCache;
+                if( cache == null ) {
+                    ProviderContext ctx = getContext();
+
+                    if( ctx == null ) {
+                        throw new CloudException("No context was provided for this request");
+                    }
+                    cache = new ResponseCache(ctx);
+                    responseCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    public @Nonnull ResponseCompression getResponseCompression() throws CloudException {
+        ResponseCompression compression = responseCompression;
+
+        if( compression == null ) {
+            synchronized( this ) {
+                compression = responseCompression;
+                if( compression == null ) {
+                    ProviderContext ctx = getContext();
+
+                    if( ctx == null ) {
+                        throw new CloudException("No context was provided for this request");
+                    }
+                    compression = new ResponseCompression(ctx);
+                    responseCompression = compression;
+                }
+            }
+        }
+        return compression;
+    }
+
+    public @Nonnull RetryPolicy getRetryPolicy() throws CloudException {
+        RetryPolicy policy = retryPolicy;
+
+        if( policy == null ) {
+            synchronized( this ) {
+                policy = retryPolicy;
+                if( policy == null ) {
+                    ProviderContext ctx = getContext();
+
+                    if( ctx == null ) {
+                        throw new CloudException("No context was provided for this request");
+                    }
+                    policy = new RetryPolicy(ctx);
+                    retryPolicy = policy;
+                }
+            }
+        }
+        return policy;
+    }
+
+    public @Nonnull ServerInventory getServerInventory() throws CloudException {
+        ServerInventory inventory = serverInventory;
+
+        if( inventory == null ) {
+            synchronized( this ) {
+                inventory = serverInventory;
+                if( inventory == null ) {
+                    ProviderContext ctx = getContext();
+
+                    if( ctx == null ) {
+                        throw new CloudException("No context was provided for this request");
+                    }
+                    inventory = new ServerInventory(this, ctx);
+                    serverInventory = inventory;
+                }
+            }
+        }
+        return inventory;
+    }
+
     @Override
     public @Nonnull RackspaceComputeServices getComputeServices() {
         return new RackspaceComputeServices(this);
@@ -202,6 +550,11 @@ public class RackspaceCloud extends AbstractCloud {
                 RackspaceMethod method = new RackspaceMethod(this);
                 
                 if( method.authenticate() != null ) {
+                    Properties p = ctx.getCustomProperties();
+
+                    if( p != null && "true".equalsIgnoreCase(p.getProperty("referenceDataWarmUp")) ) {
+                        getReferenceDataCache().warmUp();
+                    }
                     return pk;
                 }
                 return null;
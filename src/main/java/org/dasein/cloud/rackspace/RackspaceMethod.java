@@ -18,6 +18,10 @@
 
 package org.dasein.cloud.rackspace;
 
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
 import org.dasein.cloud.CloudErrorType;
 import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
@@ -37,12 +41,30 @@ public class RackspaceMethod extends AbstractMethod {
         }
         delete(context.getAuthToken(), context.getLoadBalancerUrl(ctx.getRegionId()), resource + "/" + resourceId);
     }
+
+    public Future<Void> deleteLoadBalancersAsync(final String resource, final String resourceId) throws CloudException {
+        return submit(new Callable<Void>() {
+            public Void call() throws CloudException, InternalException {
+                deleteLoadBalancers(resource, resourceId);
+                return null;
+            }
+        });
+    }
     
     public void deleteServers(String resource, String resourceId) throws CloudException, InternalException {
         AuthenticationContext context = provider.getAuthenticationContext();
 
         delete(context.getAuthToken(), context.getServerUrl(), resource + "/" + resourceId);
     }
+
+    public Future<Void> deleteServersAsync(final String resource, final String resourceId) throws CloudException {
+        return submit(new Callable<Void>() {
+            public Void call() throws CloudException, InternalException {
+                deleteServers(resource, resourceId);
+                return null;
+            }
+        });
+    }
     
     public JSONObject getLoadBalancers(String resource, String resourceId) throws CloudException, InternalException {
         AuthenticationContext context = provider.getAuthenticationContext();
@@ -55,17 +77,21 @@ public class RackspaceMethod extends AbstractMethod {
         if( resourceId != null ) {
             resource = resource + "/" + resourceId;
         }
-        String response = getString(context.getAuthToken(), context.getLoadBalancerUrl(ctx.getRegionId()), resource);
+        return getJSON(context.getAuthToken(), context.getLoadBalancerUrl(ctx.getRegionId()), resource);
+    }
 
-        if( response == null ) {
-            return null;
-        }
-        try {
-            return new JSONObject(response);
-        }
-        catch( JSONException e ) {
-            throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", response);
-        }
+    public Future<JSONObject> getLoadBalancersAsync(final String resource, final String resourceId) throws CloudException {
+        return submit(new Callable<JSONObject>() {
+            public JSONObject call() throws CloudException, InternalException {
+                return getLoadBalancers(resource, resourceId);
+            }
+        });
+    }
+    
+    public JSONObject getServerLimits() throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+
+        return getJSON(context.getAuthToken(), context.getServerUrl(), "/limits");
     }
     
     public JSONObject getServers(String resource, String resourceId) throws CloudException, InternalException {
@@ -77,9 +103,20 @@ public class RackspaceMethod extends AbstractMethod {
         else {
             resource = resource + "/detail";
         }
-        String response = getString(context.getAuthToken(), context.getServerUrl(), resource);
+        return getJSON(context.getAuthToken(), context.getServerUrl(), resource);
+    }
 
-        if( response == null ) {
+    /**
+     * Lists the servers that were created, changed or deleted since the specified time. Deleted servers are
+     * reported with a status of <code>DELETED</code>.
+     * @param since the time of the previous listing, in seconds since the epoch
+     * @return the changed servers, or null if nothing has changed
+     */
+    public JSONObject getServerChanges(long since) throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+        String response = getString(context.getAuthToken(), context.getServerUrl(), "/servers/detail?changes-since=" + since);
+
+        if( response == null || response.trim().length() < 1 ) {
             return null;
         }
         try {
@@ -89,6 +126,14 @@ public class RackspaceMethod extends AbstractMethod {
             throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", response);
         }
     }
+
+    public Future<JSONObject> getServersAsync(final String resource, final String resourceId) throws CloudException {
+        return submit(new Callable<JSONObject>() {
+            public JSONObject call() throws CloudException, InternalException {
+                return getServers(resource, resourceId);
+            }
+        });
+    }
     
 
     
@@ -114,6 +159,14 @@ public class RackspaceMethod extends AbstractMethod {
             throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", response);
         }
     }
+
+    public Future<JSONObject> postLoadBalancersAsync(final String resource, final String resourceId, final JSONObject body) throws CloudException {
+        return submit(new Callable<JSONObject>() {
+            public JSONObject call() throws CloudException, InternalException {
+                return postLoadBalancers(resource, resourceId, body);
+            }
+        });
+    }
     
     public JSONObject postServers(String resource, String resourceId, JSONObject body) throws CloudException, InternalException {
         AuthenticationContext context = provider.getAuthenticationContext();
@@ -133,5 +186,52 @@ public class RackspaceMethod extends AbstractMethod {
             throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", response);
         }
     }
-}
 
+    public Future<JSONObject> postServersAsync(final String resource, final String resourceId, final JSONObject body) throws CloudException {
+        return submit(new Callable<JSONObject>() {
+            public JSONObject call() throws CloudException, InternalException {
+                return postServers(resource, resourceId, body);
+            }
+        });
+    }
+
+    /**
+     * Reads the listing as it arrives rather than buffering it. With the response cache enabled the listing goes
+     * through {@link #getJSON(String, String, String)} instead, so an unchanged listing costs a 304 and is read
+     * from the cached copy.
+     */
+    public JSONListReader streamLoadBalancers(String resource, String listName) throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new CloudException("No context has been set for this request");
+        }
+        return stream(context.getAuthToken(), context.getLoadBalancerUrl(ctx.getRegionId()), resource, listName);
+    }
+
+    /**
+     * Reads the listing as it arrives rather than buffering it. With the response cache enabled the listing goes
+     * through {@link #getJSON(String, String, String)} instead, so an unchanged listing costs a 304 and is read
+     * from the cached copy.
+     */
+    public JSONListReader streamServers(String resource, String listName) throws CloudException, InternalException {
+        AuthenticationContext context = provider.getAuthenticationContext();
+
+        return stream(context.getAuthToken(), context.getServerUrl(), resource + "/detail", listName);
+    }
+
+    private JSONListReader stream(String authToken, String endpoint, String resource, String listName) throws CloudException, InternalException {
+        if( provider.getResponseCache().isCacheable(endpoint + resource) ) {
+            JSONObject ob = getJSON(authToken, endpoint, resource);
+
+            return (ob == null ? null : new JSONListReader(ob, listName));
+        }
+        InputStream input = getStream(authToken, endpoint, resource);
+
+        if( input == null ) {
+            return null;
+        }
+        return new JSONListReader(input, listName);
+    }
+}
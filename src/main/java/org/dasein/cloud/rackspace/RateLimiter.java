@@ -0,0 +1,248 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.util.CalendarWrapper;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Client-side token buckets for each endpoint family (<code>servers</code>, <code>loadbalancers</code>,
+ * <code>storage</code>, <code>cdn</code>) and verb, so callers queue for a token instead of tripping the server side
+ * limiter. The servers and load balancer buckets are seeded from their <code>/limits</code> resources and refreshed
+ * every <code>rateLimitRefresh</code> seconds. Any family may be given a fixed budget of requests per second through
+ * <code>rateLimit.&lt;family&gt;</code>, and <code>rateLimit=false</code> turns the limiter off.
+ */
+public class RateLimiter {
+    static public final String SERVERS       = "servers";
+    static public final String LOAD_BALANCERS = "loadbalancers";
+    static public final String STORAGE       = "storage";
+    static public final String CDN           = "cdn";
+
+    static public final long DEFAULT_REFRESH = 5 * CalendarWrapper.MINUTE;
+
+    static private class TokenBucket {
+        private double capacity;
+        private long   lastRefill;
+        private double rate;
+        private double tokens;
+
+        private TokenBucket(double capacity, long period, double tokens) {
+            this.capacity = capacity;
+            this.rate = capacity/period;
+            this.tokens = Math.min(capacity, tokens);
+            this.lastRefill = System.currentTimeMillis();
+        }
+
+        private synchronized long reserve() {
+            long now = System.currentTimeMillis();
+
+            tokens = Math.min(capacity, tokens + ((now - lastRefill) * rate));
+            lastRefill = now;
+            tokens -= 1.0;
+            if( tokens >= 0.0 ) {
+                return 0L;
+            }
+            return (long)Math.ceil(-tokens/rate);
+        }
+
+        private boolean matches(double capacity, long period) {
+            return (this.capacity == capacity && this.rate == capacity/period);
+        }
+    }
+
+    private Map<String,TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+    private volatile boolean        closed;
+    private boolean                 enabled;
+    private RackspaceCloud          provider;
+    private long                    refreshInterval;
+    private Thread                  refresher;
+
+    public RateLimiter(@Nonnull RackspaceCloud provider, @Nonnull ProviderContext ctx) {
+        Properties p = ctx.getCustomProperties();
+
+        this.provider = provider;
+        enabled = (p == null || !"false".equalsIgnoreCase(p.getProperty("rateLimit")));
+        refreshInterval = RackspaceCloud.getLongProperty(p, "rateLimitRefresh", DEFAULT_REFRESH/CalendarWrapper.SECOND) * CalendarWrapper.SECOND;
+        if( !enabled ) {
+            return;
+        }
+        for( String family : new String[] { SERVERS, LOAD_BALANCERS, STORAGE, CDN } ) {
+            long perSecond = RackspaceCloud.getLongProperty(p, "rateLimit." + family, 0L);
+
+            if( perSecond > 0L ) {
+                buckets.put(family + ":*", new TokenBucket(perSecond, CalendarWrapper.SECOND, perSecond));
+            }
+        }
+        refresher = new Thread() {
+            public void run() {
+                refresh();
+            }
+        };
+        refresher.setName("Rackspace Rate Limit Refresh");
+        refresher.setDaemon(true);
+        refresher.start();
+    }
+
+    /**
+     * Takes a token for the specified family and verb, waiting until one is available.
+     * @return the number of milliseconds the caller spent waiting for the token
+     */
+    public long acquire(@Nonnull String family, @Nonnull String verb) throws InterruptedException {
+        if( !enabled ) {
+            return 0L;
+        }
+        TokenBucket bucket = buckets.get(family + ":" + verb);
+
+        if( bucket == null ) {
+            bucket = buckets.get(family + ":*");
+            if( bucket == null ) {
+                return 0L;
+            }
+        }
+        long wait = bucket.reserve();
+
+        if( wait > 0L ) {
+            Logger logger = RackspaceCloud.getLogger(RateLimiter.class, "std");
+
+            if( logger.isDebugEnabled() ) {
+                logger.debug("acquire(): Waiting " + wait + "ms for a " + family + " " + verb + " token");
+            }
+            Thread.sleep(wait);
+        }
+        return wait;
+    }
+
+    public void close() {
+        closed = true;
+        if( refresher != null ) {
+            refresher.interrupt();
+        }
+    }
+
+    private void load(@Nonnull String family, @Nullable JSONObject json) throws JSONException {
+        if( json == null || !json.has("limits") ) {
+            return;
+        }
+        JSONObject limits = json.getJSONObject("limits");
+
+        if( !limits.has("rate") ) {
+            return;
+        }
+        JSONArray rates = limits.getJSONArray("rate");
+
+        for( int i=0; i<rates.length(); i++ ) {
+            JSONObject rate = rates.getJSONObject(i);
+            String uri = (rate.has("URI") ? rate.getString("URI") : rate.optString("uri", null));
+
+            // only the limits covering the whole API apply to every call in the family
+            if( uri == null || !(uri.equals("*") || uri.endsWith("/*")) ) {
+                continue;
+            }
+            if( rate.has("limit") ) {
+                JSONArray list = rate.getJSONArray("limit");
+
+                for( int j=0; j<list.length(); j++ ) {
+                    update(family, list.getJSONObject(j));
+                }
+            }
+            else {
+                update(family, rate);
+            }
+        }
+    }
+
+    private void refresh() {
+        Logger logger = RackspaceCloud.getLogger(RateLimiter.class, "std");
+
+        while( !closed ) {
+            try {
+                RackspaceMethod method = new RackspaceMethod(provider);
+                ProviderContext ctx = provider.getContext();
+
+                load(SERVERS, method.getServerLimits());
+                if( ctx != null && ctx.getRegionId() != null ) {
+                    load(LOAD_BALANCERS, method.getLoadBalancers("/limits", null));
+                }
+            }
+            catch( Throwable t ) {
+                logger.warn("refresh(): Unable to load rate limits: " + t.getMessage());
+                if( logger.isTraceEnabled() ) {
+                    t.printStackTrace();
+                }
+            }
+            try { Thread.sleep(refreshInterval); }
+            catch( InterruptedException e ) { return; }
+        }
+    }
+
+    private void update(@Nonnull String family, @Nonnull JSONObject limit) throws JSONException {
+        if( !limit.has("verb") || !limit.has("value") || !limit.has("unit") ) {
+            return;
+        }
+        String key = family + ":" + limit.getString("verb").toUpperCase(Locale.ENGLISH);
+        String unit = limit.getString("unit").toUpperCase(Locale.ENGLISH);
+        double value = limit.getDouble("value");
+        long period;
+
+        if( unit.equals("SECOND") ) {
+            period = CalendarWrapper.SECOND;
+        }
+        else if( unit.equals("MINUTE") ) {
+            period = CalendarWrapper.MINUTE;
+        }
+        else if( unit.equals("HOUR") ) {
+            period = CalendarWrapper.HOUR;
+        }
+        else if( unit.equals("DAY") ) {
+            period = CalendarWrapper.DAY;
+        }
+        else {
+            return;
+        }
+        if( value <= 0.0 ) {
+            return;
+        }
+        // a configured budget for the whole family wins over what the cloud advertises
+        if( buckets.containsKey(family + ":*") ) {
+            return;
+        }
+        TokenBucket current = buckets.get(key);
+
+        if( current == null || !current.matches(value, period) ) {
+            buckets.put(key, new TokenBucket(value, period, limit.has("remaining") ? limit.getDouble("remaining") : value));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
@@ -0,0 +1,357 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.rackspace;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.util.CalendarWrapper;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Provider-scoped cache of the reference data that rarely changes but is consulted on most calls: server flavors,
+ * images, load balancer protocols and load balancer algorithms. Each table is kept per account and region, indexed
+ * by id (or by name for protocols and algorithms) and loaded by one request. A table older than
+ * <code>referenceDataTtl</code> seconds is still served while a background thread reloads it; only a table that has
+ * never been loaded, or that was invalidated, makes the caller wait. Only one load of a table is in flight at a
+ * time: callers waiting for the table, a background reload and a warm-up all share it. With
+ * <code>referenceDataWarmUp=true</code>, all tables start loading as soon as {@link RackspaceCloud#testContext()}
+ * succeeds.
+ */
+public class ReferenceDataCache {
+    static public final String ALGORITHMS = "algorithms";
+    static public final String FLAVORS    = "flavors";
+    static public final String IMAGES     = "images";
+    static public final String PROTOCOLS  = "protocols";
+
+    static public final long DEFAULT_TTL = 15 * CalendarWrapper.MINUTE;
+
+    // how long to serve a stale table before trying again after a failed background reload
+    static private final long RETRY_INTERVAL = CalendarWrapper.MINUTE;
+
+    static private class Table {
+        private final AtomicLong                generation = new AtomicLong(0L);
+        private volatile Map<String,JSONObject> items;
+        private volatile long                   loadedAt;
+        private final AtomicReference<Load>     loading = new AtomicReference<Load>();
+    }
+
+    /**
+     * A load of one table, run by whichever thread gets to it first: a caller waiting for the table or a request
+     * thread reloading it in the background. Everyone else waits for its result.
+     */
+    static private class Load extends FutureTask<Map<String,JSONObject>> {
+        private final long  generation;
+        private final Table table;
+
+        private Load(@Nonnull Table table, long generation, @Nonnull Callable<Map<String,JSONObject>> call) {
+            super(call);
+            this.table = table;
+            this.generation = generation;
+        }
+
+        @Override
+        protected void done() {
+            table.loading.compareAndSet(this, null);
+        }
+    }
+
+    private AtomicLong                      failures = new AtomicLong(0L);
+    private AtomicLong                      hits = new AtomicLong(0L);
+    private AtomicLong                      loads = new AtomicLong(0L);
+    private RackspaceCloud                  provider;
+    private AtomicLong                      refreshes = new AtomicLong(0L);
+    private ConcurrentHashMap<String,Table> tables = new ConcurrentHashMap<String, Table>();
+    private long                            ttl;
+
+    public ReferenceDataCache(@Nonnull RackspaceCloud provider, @Nonnull ProviderContext ctx) {
+        Properties p = ctx.getCustomProperties();
+
+        this.provider = provider;
+        ttl = RackspaceCloud.getLongProperty(p, "referenceDataTtl", DEFAULT_TTL/CalendarWrapper.SECOND) * CalendarWrapper.SECOND;
+    }
+
+    /**
+     * @return the item with the specified id, or null if the table does not hold it
+     */
+    public @Nullable JSONObject get(@Nonnull String table, @Nonnull String id) throws CloudException, InternalException {
+        return getItems(table).get(id);
+    }
+
+    private void failed(@Nonnull String name, @Nonnull Table table, boolean initial, @Nonnull Exception e) {
+        failures.incrementAndGet();
+        if( !initial ) {
+            RackspaceCloud.getLogger(ReferenceDataCache.class, "std").warn("refresh(): Unable to reload " + name + ", serving the previous copy: " + e.getMessage());
+            table.loadedAt = System.currentTimeMillis() - ttl + RETRY_INTERVAL;
+        }
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    private @Nonnull Map<String,JSONObject> getItems(@Nonnull final String name) throws CloudException, InternalException {
+        final Table table = getTable(name);
+        Map<String,JSONObject> items = table.items;
+
+        if( items == null ) {
+            Load load = getLoad(name, table);
+
+            // a no-op when another thread is already running the load, in which case this waits for its result
+            load.run();
+            return getResult(load);
+        }
+        hits.incrementAndGet();
+        if( System.currentTimeMillis() - table.loadedAt >= ttl && table.loading.get() == null ) {
+            refresh(name, table);
+        }
+        return items;
+    }
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    /**
+     * @return the load of the table already in flight, or a new one that nobody has run yet
+     */
+    private @Nonnull Load getLoad(@Nonnull final String name, @Nonnull final Table table) {
+        while( true ) {
+            final long generation = table.generation.get();
+            Load current = table.loading.get();
+
+            // a load started before an invalidation would hand back what the invalidation asked to replace
+            if( current != null && current.generation == generation ) {
+                return current;
+            }
+            Load load = new Load(table, generation, new Callable<Map<String,JSONObject>>() {
+                public Map<String,JSONObject> call() throws CloudException, InternalException {
+                    boolean initial = (table.items == null);
+
+                    try {
+                        Map<String,JSONObject> items = load(name);
+
+                        synchronized( table ) {
+                            // data loaded before an invalidation must not replace what the invalidation asked for
+                            if( table.generation.get() == generation ) {
+                                table.items = items;
+                                table.loadedAt = System.currentTimeMillis();
+                            }
+                        }
+                        if( initial ) {
+                            loads.incrementAndGet();
+                        }
+                        else {
+                            refreshes.incrementAndGet();
+                        }
+                        return items;
+                    }
+                    catch( CloudException e ) {
+                        failed(name, table, initial, e);
+                        throw e;
+                    }
+                    catch( InternalException e ) {
+                        failed(name, table, initial, e);
+                        throw e;
+                    }
+                    catch( RuntimeException e ) {
+                        failed(name, table, initial, e);
+                        throw e;
+                    }
+                }
+            });
+
+            if( table.loading.compareAndSet(current, load) ) {
+                return load;
+            }
+        }
+    }
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    private @Nonnull Map<String,JSONObject> getResult(@Nonnull Load load) throws CloudException, InternalException {
+        try {
+            return load.get();
+        }
+        catch( InterruptedException e ) {
+            // the load is shared, so an interrupted caller stops waiting for it without cancelling it
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        catch( ExecutionException e ) {
+            Throwable cause = e.getCause();
+
+            if( cause instanceof CloudException ) {
+                throw (CloudException)cause;
+            }
+            if( cause instanceof InternalException ) {
+                throw (InternalException)cause;
+            }
+            if( cause instanceof RuntimeException ) {
+                throw (RuntimeException)cause;
+            }
+            throw new InternalException(cause);
+        }
+    }
+
+    private @Nonnull Table getTable(@Nonnull String name) throws CloudException {
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new CloudException("No context was provided for this request");
+        }
+        String key = ctx.getAccountNumber() + ":" + ctx.getRegionId() + ":" + name;
+        Table table = tables.get(key);
+
+        if( table == null ) {
+            tables.putIfAbsent(key, new Table());
+            table = tables.get(key);
+        }
+        return table;
+    }
+
+    /**
+     * Drops a table so that the next lookup waits for fresh data, for example after this client changed it.
+     */
+    public void invalidate(@Nonnull String table) throws CloudException {
+        Table t = getTable(table);
+
+        synchronized( t ) {
+            t.generation.incrementAndGet();
+            t.items = null;
+        }
+    }
+
+    /**
+     * @return every item in the table, in the order the cloud listed them
+     */
+    public @Nonnull Collection<JSONObject> list(@Nonnull String table) throws CloudException, InternalException {
+        return getItems(table).values();
+    }
+
+    private @Nonnull Map<String,JSONObject> load(@Nonnull String name) throws CloudException, InternalException {
+        RackspaceMethod method = new RackspaceMethod(provider);
+        LinkedHashMap<String,JSONObject> items = new LinkedHashMap<String, JSONObject>();
+
+        try {
+            if( name.equals(FLAVORS) || name.equals(IMAGES) ) {
+                JSONListReader reader = method.streamServers("/" + name, name);
+
+                if( reader != null ) {
+                    try {
+                        JSONObject item;
+
+                        while( (item = reader.next()) != null ) {
+                            if( item.has("id") ) {
+                                items.put(item.getString("id"), item);
+                            }
+                        }
+                    }
+                    finally {
+                        reader.close();
+                    }
+                }
+            }
+            else if( name.equals(PROTOCOLS) || name.equals(ALGORITHMS) ) {
+                JSONObject ob = method.getLoadBalancers("/loadbalancers", name);
+                JSONArray list = (ob == null ? null : ob.optJSONArray(name));
+
+                if( list != null ) {
+                    for( int i=0; i<list.length(); i++ ) {
+                        JSONObject item = list.getJSONObject(i);
+
+                        if( item.has("name") ) {
+                            items.put(item.getString("name"), item);
+                        }
+                    }
+                }
+            }
+            else {
+                throw new InternalException("No such reference data: " + name);
+            }
+        }
+        catch( JSONException e ) {
+            throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", "Missing JSON element for " + name + ": " + e.getMessage());
+        }
+        return Collections.unmodifiableMap(items);
+    }
+
+    private void refresh(@Nonnull String name, @Nonnull Table table) {
+        Logger logger = RackspaceCloud.getLogger(ReferenceDataCache.class, "std");
+        Load load = getLoad(name, table);
+
+        try {
+            // a no-op if a caller waiting for the table has started the load in the meantime
+            provider.getExecutor().execute(load);
+        }
+        catch( CloudException e ) {
+            logger.warn("refresh(): Unable to reload " + name + " in the background: " + e.getMessage());
+            table.loading.compareAndSet(load, null);
+        }
+        catch( RejectedExecutionException e ) {
+            // the provider is closing or its request threads are saturated; the next lookup tries again
+            logger.warn("refresh(): Unable to reload " + name + " in the background: " + e.getMessage());
+            table.loading.compareAndSet(load, null);
+        }
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        return "[hits=" + hits.get() + ",loads=" + loads.get() + ",refreshes=" + refreshes.get() + ",failures=" + failures.get() + "]";
+    }
+
+    /**
+     * Starts loading every table that has not been loaded yet in the background.
+     */
+    public void warmUp() throws CloudException {
+        for( String name : new String[] { FLAVORS, IMAGES, PROTOCOLS, ALGORITHMS } ) {
+            Table table = getTable(name);
+
+            if( table.items == null ) {
+                refresh(name, table);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.ProviderContext;
+import org.json.JSONObject;
+
+/**
+ * Opt-in cache of parsed JSON GET responses used to revalidate polled resources with <code>If-None-Match</code>
+ * and <code>If-Modified-Since</code> rather than downloading and parsing them again. Entries are keyed by account
+ * and URL and evicted least recently used first. <code>changes-since</code> queries are never cached: each one
+ * has a new URL, so caching them would only push reusable entries out. Turn it on with
+ * <code>responseCache=true</code> and bound it with <code>responseCacheSize</code> (entries).
+ */
+public class ResponseCache {
+    static public final int DEFAULT_SIZE = 100;
+
+    static public class Entry {
+        private JSONObject body;
+        private String     etag;
+        private String     lastModified;
+
+        private Entry(@Nullable String etag, @Nullable String lastModified, @Nonnull JSONObject body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        /**
+         * @return the parsed response, shared by every caller that hits this entry and therefore not to be modified
+         */
+        public @Nonnull JSONObject getBody() {
+            return body;
+        }
+
+        public @Nullable String getETag() {
+            return etag;
+        }
+
+        public @Nullable String getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private String                  account;
+    private boolean                 enabled;
+    private Map<String,Entry>       entries;
+    private AtomicLong              hits = new AtomicLong(0L);
+    private AtomicLong              misses = new AtomicLong(0L);
+
+    public ResponseCache(@Nonnull ProviderContext ctx) {
+        Properties p = ctx.getCustomProperties();
+        final int maxSize = (int)RackspaceCloud.getLongProperty(p, "responseCacheSize", DEFAULT_SIZE);
+
+        account = ctx.getAccountNumber();
+        enabled = (p != null && "true".equalsIgnoreCase(p.getProperty("responseCache")));
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Entry> eldest) {
+                return (size() > maxSize);
+            }
+        };
+    }
+
+    public @Nullable Entry get(@Nonnull String url) {
+        if( !isCacheable(url) ) {
+            return null;
+        }
+        synchronized( entries ) {
+            return entries.get(account + ":" + url);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public void hit() {
+        hits.incrementAndGet();
+    }
+
+    public boolean isCacheable(@Nonnull String url) {
+        return (enabled && !url.contains("changes-since="));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void miss() {
+        misses.incrementAndGet();
+    }
+
+    public void put(@Nonnull String url, @Nullable String etag, @Nullable String lastModified, @Nullable JSONObject body) {
+        if( !isCacheable(url) ) {
+            return;
+        }
+        synchronized( entries ) {
+            if( body == null || (etag == null && lastModified == null) ) {
+                entries.remove(account + ":" + url);
+            }
+            else {
+                entries.put(account + ":" + url, new Entry(etag, lastModified, body));
+            }
+        }
+    }
+}
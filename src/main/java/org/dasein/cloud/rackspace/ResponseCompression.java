@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.rackspace.metrics.MetricsCollector;
+
+/**
+ * Negotiates gzip/deflate responses for the endpoint families that have it enabled and counts the bytes
+ * read off the wire against the bytes handed to callers, both in total and per operation through the
+ * {@link MetricsCollector}. Compression is on by default everywhere except
+ * <code>storage</code>, where object bodies must arrive exactly as stored. Use <code>compression=false</code>
+ * to disable it entirely or <code>compression.&lt;family&gt;=true|false</code> to override a single family.
+ */
+public class ResponseCompression {
+    private AtomicLong compressed = new AtomicLong(0L);
+    private AtomicLong decompressed = new AtomicLong(0L);
+    private Properties properties;
+
+    public ResponseCompression(@Nonnull ProviderContext ctx) {
+        properties = ctx.getCustomProperties();
+    }
+
+    /**
+     * Advertises gzip and deflate support on the request if its family has compression enabled.
+     */
+    public void prepare(@Nonnull HttpRequestBase request, @Nullable String family) {
+        if( isEnabled(family) && request.getFirstHeader("Accept-Encoding") == null ) {
+            request.addHeader("Accept-Encoding", "gzip,deflate");
+        }
+    }
+
+    /**
+     * Swaps a compressed response entity for one that inflates on read, counting bytes on both sides and
+     * reporting them against the specified operation.
+     */
+    public void decode(@Nonnull HttpResponse response, @Nonnull String operation, @Nonnull MetricsCollector metrics) {
+        HttpEntity entity = response.getEntity();
+
+        if( entity == null ) {
+            return;
+        }
+        Header encoding = entity.getContentEncoding();
+        String value = (encoding == null ? null : encoding.getValue());
+
+        if( value == null ) {
+            return;
+        }
+        value = value.trim().toLowerCase();
+        if( value.equals("gzip") || value.equals("x-gzip") ) {
+            response.setEntity(count(new GzipDecompressingEntity(count(entity, operation, metrics, false)), operation, metrics, true));
+        }
+        else if( value.equals("deflate") ) {
+            response.setEntity(count(new DeflateDecompressingEntity(count(entity, operation, metrics, false)), operation, metrics, true));
+        }
+    }
+
+    private @Nonnull HttpEntity count(@Nonnull HttpEntity entity, @Nonnull final String operation, @Nonnull final MetricsCollector metrics, final boolean inflated) {
+        return new CountingEntity(entity) {
+            @Override
+            protected void counted(long bytes) {
+                if( inflated ) {
+                    decompressed.addAndGet(bytes);
+                    metrics.bytesDecompressed(operation, 0L, bytes);
+                }
+                else {
+                    compressed.addAndGet(bytes);
+                    metrics.bytesDecompressed(operation, bytes, 0L);
+                }
+            }
+        };
+    }
+
+    public long getCompressedBytes() {
+        return compressed.get();
+    }
+
+    public long getDecompressedBytes() {
+        return decompressed.get();
+    }
+
+    public boolean isEnabled(@Nullable String family) {
+        if( family == null ) {
+            return false;
+        }
+        if( properties != null ) {
+            if( "false".equalsIgnoreCase(properties.getProperty("compression")) ) {
+                return false;
+            }
+            String value = properties.getProperty("compression." + family);
+
+            if( value != null && value.trim().length() > 0 ) {
+                return value.trim().equalsIgnoreCase("true");
+            }
+        }
+        return !family.equals(RateLimiter.STORAGE);
+    }
+}
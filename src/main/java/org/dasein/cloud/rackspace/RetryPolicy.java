@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.util.CalendarWrapper;
+
+/**
+ * Decides whether a request rejected with <code>overLimit</code> (413) or <code>serviceUnavailable</code> (503)
+ * is retried and how long to wait before doing so. Waits grow exponentially with full jitter and never fall short
+ * of a <code>Retry-After</code> header. Only idempotent verbs are retried unless <code>retryNonIdempotent</code>
+ * is set. The remaining knobs are the custom properties <code>maxRetries</code>, <code>retryBaseDelay</code>,
+ * <code>retryMaxDelay</code> and <code>retryDeadline</code> (all in milliseconds).
+ */
+public class RetryPolicy {
+    static public final int  DEFAULT_MAX_RETRIES = 5;
+    static public final long DEFAULT_BASE_DELAY  = 500L;
+    static public final long DEFAULT_MAX_DELAY   = 30 * CalendarWrapper.SECOND;
+    static public final long DEFAULT_DEADLINE    = 2 * CalendarWrapper.MINUTE;
+
+    static private final int OVER_LIMIT = 413;
+
+    private long       baseDelay;
+    private long       deadline;
+    private AtomicLong exhausted = new AtomicLong(0L);
+    private int        maxRetries;
+    private long       maxDelay;
+    private boolean    nonIdempotent;
+    private Random     random = new Random();
+    private AtomicLong retries = new AtomicLong(0L);
+
+    public RetryPolicy(@Nonnull ProviderContext ctx) {
+        Properties p = ctx.getCustomProperties();
+
+        maxRetries = (int)RackspaceCloud.getLongProperty(p, "maxRetries", DEFAULT_MAX_RETRIES);
+        baseDelay = RackspaceCloud.getLongProperty(p, "retryBaseDelay", DEFAULT_BASE_DELAY);
+        maxDelay = RackspaceCloud.getLongProperty(p, "retryMaxDelay", DEFAULT_MAX_DELAY);
+        deadline = RackspaceCloud.getLongProperty(p, "retryDeadline", DEFAULT_DEADLINE);
+        nonIdempotent = (p != null && "true".equalsIgnoreCase(p.getProperty("retryNonIdempotent")));
+        if( p != null && "0".equals(p.getProperty("maxRetries")) ) {
+            maxRetries = 0;
+        }
+    }
+
+    /**
+     * @param attempt the number of attempts that already failed
+     * @return a jittered, exponentially growing number of milliseconds to wait before trying again
+     */
+    public long getBackoff(@Nonnegative int attempt) {
+        long ceiling = baseDelay << Math.min(attempt, 30);
+
+        if( ceiling <= 0L || ceiling > maxDelay ) {
+            ceiling = maxDelay;
+        }
+        return nextLong(ceiling);
+    }
+
+    /**
+     * @return the number of milliseconds to wait before the next attempt, or -1 if the request should not be retried
+     */
+    public long getDelay(@Nonnull String method, @Nonnull HttpResponse response, @Nonnegative int attempt, @Nonnegative long elapsed) {
+        if( !isRetryable(response.getStatusLine().getStatusCode()) ) {
+            return -1L;
+        }
+        if( !nonIdempotent && !isIdempotent(method) ) {
+            return -1L;
+        }
+        long delay = -1L;
+
+        if( attempt < maxRetries ) {
+            delay = Math.max(getRetryAfter(response), getBackoff(attempt));
+            if( elapsed + delay > deadline ) {
+                delay = -1L;
+            }
+        }
+        if( delay < 0L ) {
+            exhausted.incrementAndGet();
+        }
+        return delay;
+    }
+
+    public long getExhaustedCount() {
+        return exhausted.get();
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    private long getRetryAfter(@Nonnull HttpResponse response) {
+        Header header = response.getFirstHeader("Retry-After");
+        String value = (header == null ? null : header.getValue());
+
+        if( value == null || value.trim().length() < 1 ) {
+            return 0L;
+        }
+        value = value.trim();
+        try {
+            return Long.parseLong(value) * CalendarWrapper.SECOND;
+        }
+        catch( NumberFormatException ignore ) {
+            // not delta-seconds, so it should be an HTTP date
+        }
+        try {
+            Date when = DateUtils.parseDate(value);
+
+            return Math.max(0L, when.getTime() - System.currentTimeMillis());
+        }
+        catch( DateParseException e ) {
+            RackspaceCloud.getLogger(RetryPolicy.class, "std").warn("Unable to parse Retry-After value: " + value);
+            return 0L;
+        }
+    }
+
+    /**
+     * @return true if a request answered with the specified status may succeed when tried again later
+     */
+    public boolean isRetryable(int code) {
+        return (code == OVER_LIMIT || code == 503);
+    }
+
+    public boolean isIdempotent(@Nullable String method) {
+        return ("GET".equals(method) || "HEAD".equals(method) || "PUT".equals(method) || "DELETE".equals(method) || "OPTIONS".equals(method) || "COPY".equals(method));
+    }
+
+    private long nextLong(long ceiling) {
+        return (long)(random.nextDouble() * ceiling);
+    }
+
+    public void retried() {
+        retries.incrementAndGet();
+    }
+}
@@ -48,11 +48,11 @@ import org.dasein.cloud.compute.MachineImageType;
 import org.dasein.cloud.compute.Platform;
 import org.dasein.cloud.compute.VirtualMachine;
 import org.dasein.cloud.identity.ServiceAction;
+import org.dasein.cloud.rackspace.JSONListReader;
 import org.dasein.cloud.rackspace.RackspaceCloud;
 import org.dasein.cloud.rackspace.RackspaceException;
 import org.dasein.cloud.rackspace.RackspaceMethod;
 import org.dasein.util.CalendarWrapper;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -111,6 +111,8 @@ public class CloudServerImages implements MachineImageSupport {
             RackspaceMethod method = new RackspaceMethod(provider);
             JSONObject result = method.postServers("/images", null, new JSONObject(wrapper));
 
+            new ImageCatalog(provider).invalidate();
+
             if( result.has("image") ) {
                 try {
                     JSONObject img = result.getJSONObject("image");
@@ -313,21 +315,20 @@ public class CloudServerImages implements MachineImageSupport {
                 return Collections.emptyList();
             }
             RackspaceMethod method = new RackspaceMethod(provider);
-            JSONObject ob = method.getServers("/images", null);
+            JSONListReader reader = method.streamServers("/images", "images");
             ArrayList<MachineImage> images = new ArrayList<MachineImage>();
 
+            if( reader == null ) {
+                return images;
+            }
             try {
-                if( ob.has("images") ) {
-                    JSONArray list = ob.getJSONArray("images");
-
-                    for( int i=0; i<list.length(); i++ ) {
-                        JSONObject image = list.getJSONObject(i);
-                        MachineImage img = toImage(image);
+                JSONObject image;
 
-                        if( img != null ) {
-                            images.add(img);
-                        }
+                while( (image = reader.next()) != null ) {
+                    MachineImage img = toImage(image);
 
+                    if( img != null ) {
+                        images.add(img);
                     }
                 }
             }
@@ -335,6 +336,9 @@ public class CloudServerImages implements MachineImageSupport {
                 logger.error("listMachineImages(): Unable to identify expected values in JSON: " + e.getMessage());
                 throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", "Missing JSON element for images: " + e.getMessage());
             }
+            finally {
+                reader.close();
+            }
             return images;
         }
         finally {
@@ -426,6 +430,7 @@ public class CloudServerImages implements MachineImageSupport {
             do {
                 try {
                     method.deleteServers("/images", providerImageId);
+                    new ImageCatalog(provider).invalidate();
                     return;
                 }
                 catch( RackspaceException e ) {
@@ -22,9 +22,20 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletResponse;
@@ -52,9 +63,11 @@ import org.dasein.cloud.compute.VmState;
 import org.dasein.cloud.compute.VmStatistics;
 import org.dasein.cloud.dc.DataCenter;
 import org.dasein.cloud.identity.ServiceAction;
+import org.dasein.cloud.rackspace.JSONListReader;
 import org.dasein.cloud.rackspace.RackspaceCloud;
 import org.dasein.cloud.rackspace.RackspaceException;
 import org.dasein.cloud.rackspace.RackspaceMethod;
+import org.dasein.cloud.rackspace.ReferenceDataCache;
 import org.dasein.util.CalendarWrapper;
 import org.dasein.util.uom.storage.Gigabyte;
 import org.dasein.util.uom.storage.Megabyte;
@@ -65,11 +78,95 @@ import org.json.JSONObject;
 
 
 public class CloudServers implements VirtualMachineSupport {
-    static private HashMap<String,Collection<VirtualMachineProduct>> cachedProducts = new HashMap<String,Collection<VirtualMachineProduct>>();
-    
-    static public final int NAME_LIMIT = 30;
-    static public final int TAG_LIMIT  = 4;
-    
+    static public final int DEFAULT_LAUNCH_THREADS = 5;
+    static public final int NAME_LIMIT             = 30;
+    static public final int TAG_LIMIT              = 4;
+
+    /**
+     * A server launch that holds the provider open from the moment it is queued until it has finished, failed or
+     * been cancelled.
+     */
+    static private class Launch extends FutureTask<VirtualMachine> {
+        private RackspaceCloud provider;
+
+        private Launch(@Nonnull RackspaceCloud provider, @Nonnull Callable<VirtualMachine> call) {
+            super(call);
+            this.provider = provider;
+            provider.hold();
+        }
+
+        @Override
+        protected void done() {
+            provider.release();
+        }
+
+        private void fail(@Nonnull Throwable cause) {
+            setException(cause);
+        }
+    }
+
+    /**
+     * Runs queued launches on the provider's executor through no more workers than the semaphore has permits. Each
+     * worker keeps taking launches off the queue until it is empty, so a finished launch never hands the next one
+     * back to an executor that may be saturated, and neither the caller nor a pool thread ever waits on a permit.
+     * A worker the executor refuses leaves its launches queued for the workers already running. The launches still
+     * queued only fail once the provider has been closed or the executor refused the very first worker.
+     */
+    static private class LaunchQueue {
+        private ExecutorService               executor;
+        private ConcurrentLinkedQueue<Launch> pending = new ConcurrentLinkedQueue<Launch>();
+        private Semaphore                     permits;
+        private int                           threads;
+
+        private LaunchQueue(@Nonnull ExecutorService executor, int threads) {
+            this.executor = executor;
+            this.threads = threads;
+            permits = new Semaphore(threads);
+        }
+
+        private void add(@Nonnull Launch launch) {
+            pending.add(launch);
+        }
+
+        private void drain() {
+            while( !pending.isEmpty() && permits.tryAcquire() ) {
+                try {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            do {
+                                try {
+                                    for( Launch launch = pending.poll(); launch != null; launch = pending.poll() ) {
+                                        if( executor.isShutdown() ) {
+                                            launch.fail(new CloudException("The provider has been closed"));
+                                        }
+                                        else {
+                                            launch.run();
+                                        }
+                                    }
+                                }
+                                finally {
+                                    permits.release();
+                                }
+                                // picks up a launch left behind by a refused worker after the last poll came back empty
+                            } while( !pending.isEmpty() && permits.tryAcquire() );
+                        }
+                    });
+                }
+                catch( RejectedExecutionException e ) {
+                    permits.release();
+                    if( executor.isShutdown() || permits.availablePermits() >= threads ) {
+                        CloudException cause = new CloudException(e);
+
+                        for( Launch next = pending.poll(); next != null; next = pending.poll() ) {
+                            next.fail(cause);
+                        }
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
     private RackspaceCloud provider;
     
     CloudServers(@Nonnull RackspaceCloud provider) { this.provider = provider; }
@@ -125,12 +222,13 @@ public class CloudServers implements VirtualMachineSupport {
             if( !provider.isMyRegion() ) {
                 return null;
             }
-            for( VirtualMachineProduct product : listProducts(Architecture.I64) ) {
-                if( product.getProviderProductId().equals(productId) ) {
-                    return product;
-                }
+            try {
+                return toProduct(provider.getReferenceDataCache().get(ReferenceDataCache.FLAVORS, productId));
+            }
+            catch( JSONException e ) {
+                std.error("getProduct(): Unable to identify expected values in JSON: " + e.getMessage());
+                throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", "Missing JSON element for flavors: " + e.getMessage());
             }
-            return null;
         }
         finally {
             if( std.isTraceEnabled() ) {
@@ -157,6 +255,22 @@ public class CloudServers implements VirtualMachineSupport {
                 return null;
             }
             */
+            ServerInventory inventory = provider.getServerInventory();
+
+            if( inventory.isEnabled() ) {
+                JSONObject server = inventory.getServer(vmId);
+
+                if( server != null ) {
+                    try {
+                        return toVirtualMachine(server);
+                    }
+                    catch( JSONException e ) {
+                        std.error("getVirtualMachine(): Unable to identify expected values in JSON: " + e.getMessage());
+                        throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", "Missing JSON element for servers");
+                    }
+                }
+                // the server may be newer than the inventory, so ask the cloud
+            }
             RackspaceMethod method = new RackspaceMethod(provider);
             JSONObject ob = method.getServers("/servers", vmId);
 
@@ -276,75 +390,84 @@ public class CloudServers implements VirtualMachineSupport {
             if( !provider.isMyRegion() ) {
                 throw new CloudException("Unable to launch any servers in " + provider.getContext().getRegionId());
             }
-            String fromMachineImageId = withLaunchOptions.getMachineImageId();
-            String productId = withLaunchOptions.getStandardProductId();
-            Map<String,Object> meta = withLaunchOptions.getMetaData();
+            MachineImage targetImage = new ImageCatalog(provider).getImage(withLaunchOptions.getMachineImageId());
 
-            MachineImage targetImage = provider.getComputeServices().getImageSupport().getImage(fromMachineImageId);
-            HashMap<String,Object> wrapper = new HashMap<String,Object>();
-            HashMap<String,Object> json = new HashMap<String,Object>();
+            if( targetImage == null ) {
+                throw new CloudException("No such machine image: " + withLaunchOptions.getMachineImageId());
+            }
+            Map<String,Object> metaData = toMetaData(withLaunchOptions, targetImage);
 
-            json.put("imageId", Long.parseLong(fromMachineImageId));
-            json.put("flavorId", Long.parseLong(productId));
-            HashMap<String,Object> metaData = new HashMap<String,Object>();
-            boolean safeName = false;
-            int tagCount = 0;
-
-            if( meta != null ) {
-                for( Map.Entry<String,Object> tag : meta.entrySet() ) {
-                    if( tag.getKey() != null && tag.getValue() != null && tag.getKey().length() > 0 && tag.getValue().toString().length() > 0 ) {
-                        metaData.put(tag.getKey(), tag.getValue());
-                        tagCount++;
-                        if( tagCount >= TAG_LIMIT ) {
-                            break;
-                        }
-                    }
-                }
+            return create(withLaunchOptions, metaData, validateName(withLaunchOptions.getHostName(), metaData.containsKey("dsnName")));
+        }
+        finally {
+            if( logger.isTraceEnabled() ) {
+                logger.trace("exit - " + CloudServers.class.getName() + ".launch()");
             }
-            if( tagCount < TAG_LIMIT && !targetImage.getPlatform().equals(Platform.UNKNOWN) ) {
-                metaData.put("dsnPlatform", targetImage.getPlatform().name());
-                tagCount++;
+        }
+    }
+
+    /**
+     * Launches several servers from the same options. The image, flavor and region are checked once, unique names
+     * are reserved for all servers from a single listing, and the servers are then created on the provider's
+     * executor by at most <code>launchThreads</code> concurrent requests that share the provider's rate limits.
+     * Launches still waiting when the provider is closed, or all of them when the executor is too busy to take even
+     * one request, fail with a {@link CloudException}.
+     * @param count the number of servers to launch
+     * @return one future per server yielding the launched server, or failing with the reason it could not be launched
+     */
+    public @Nonnull List<Future<VirtualMachine>> launchMany(@Nonnull final VMLaunchOptions withLaunchOptions, @Nonnegative int count) throws CloudException, InternalException {
+        Logger logger = RackspaceCloud.getLogger(CloudServers.class, "std");
+
+        if( logger.isTraceEnabled() ) {
+            logger.trace("enter - " + CloudServers.class.getName() + ".launchMany(" + withLaunchOptions + "," + count + ")");
+        }
+        try {
+            ProviderContext ctx = provider.getContext();
+
+            if( ctx == null ) {
+                throw new CloudException("No context was provided for this request");
             }
-            if( tagCount < TAG_LIMIT ) {
-                metaData.put("dsnDescription", withLaunchOptions.getDescription());
-                tagCount++;
+            if( !provider.isMyRegion() ) {
+                throw new CloudException("Unable to launch any servers in " + ctx.getRegionId());
             }
-            if( tagCount < TAG_LIMIT ) {
-                metaData.put("dsnName", withLaunchOptions.getFriendlyName());
-                safeName = true;
+            if( count < 1 ) {
+                return Collections.emptyList();
             }
-            metaData.put("dsnTrueImage", targetImage.getProviderMachineImageId());
-            json.put("metadata", metaData);
-            json.put("name", validateName(withLaunchOptions.getHostName(), safeName));
-
-            wrapper.put("server", json);
-            RackspaceMethod method = new RackspaceMethod(provider);
-            JSONObject result = method.postServers("/servers", null, new JSONObject(wrapper));
+            MachineImage targetImage = new ImageCatalog(provider).getImage(withLaunchOptions.getMachineImageId());
 
-            if( result.has("server") ) {
-                try {
-                    JSONObject server = result.getJSONObject("server");
-                    VirtualMachine vm = toVirtualMachine(server);
+            if( targetImage == null ) {
+                throw new CloudException("No such machine image: " + withLaunchOptions.getMachineImageId());
+            }
+            if( getProduct(withLaunchOptions.getStandardProductId()) == null ) {
+                throw new CloudException("No such product: " + withLaunchOptions.getStandardProductId());
+            }
+            final Map<String,Object> metaData = toMetaData(withLaunchOptions, targetImage);
+            Set<String> taken = getServerNames();
+            ArrayList<String> names = new ArrayList<String>();
 
-                    if( vm != null ) {
-                        return vm;
-                    }
-                }
-                catch( JSONException e ) {
-                    logger.error("launch(): Unable to understand launch response: " + e.getMessage());
-                    if( logger.isTraceEnabled() ) {
-                        e.printStackTrace();
-                    }
-                    throw new CloudException(e);
-                }
+            for( int i=0; i<count; i++ ) {
+                names.add(validateName(withLaunchOptions.getHostName(), metaData.containsKey("dsnName"), taken));
             }
-            logger.error("launch(): No server was created by the launch attempt, and no error was returned");
-            throw new CloudException("No virtual machine was launched");
+            int threads = (int)RackspaceCloud.getLongProperty(ctx.getCustomProperties(), "launchThreads", DEFAULT_LAUNCH_THREADS);
+            LaunchQueue queue = new LaunchQueue(provider.getExecutor(), Math.max(1, Math.min(threads, count)));
+            ArrayList<Future<VirtualMachine>> results = new ArrayList<Future<VirtualMachine>>();
+
+            for( final String name : names ) {
+                Launch launch = new Launch(provider, new Callable<VirtualMachine>() {
+                    public VirtualMachine call() throws CloudException, InternalException {
+                        return create(withLaunchOptions, metaData, name);
+                    }
+                });
 
+                queue.add(launch);
+                results.add(launch);
+            }
+            queue.drain();
+            return results;
         }
         finally {
             if( logger.isTraceEnabled() ) {
-                logger.trace("exit - " + CloudServers.class.getName() + ".launch()");
+                logger.trace("exit - " + CloudServers.class.getName() + ".launchMany()");
             }
         }
     }
@@ -416,37 +539,22 @@ public class CloudServers implements VirtualMachineSupport {
             if( architecture.equals(Architecture.I32) ) {
                 return Collections.emptyList();
             }
-            Collection<VirtualMachineProduct> products = cachedProducts.get(provider.getContext().getRegionId());
-            
-            if( products == null ) {
-                if( std.isDebugEnabled() ) {
-                    std.debug("listProducts(): Cache for " + provider.getContext().getRegionId() + " is empty, fetching values from cloud");
-                }
-                RackspaceMethod method = new RackspaceMethod(provider);
-                JSONObject ob = method.getServers("/flavors", null);
-                
-                products = new ArrayList<VirtualMachineProduct>();
-                try {
-                    if( ob.has("flavors") ) {
-                        JSONArray list = ob.getJSONArray("flavors");
-                        
-                        for( int i=0; i<list.length(); i++ ) {
-                            JSONObject p = list.getJSONObject(i);
-                            VirtualMachineProduct product = toProduct(p);
-                            
-                            if( product != null ) {
-                                products.add(product);
-                            }
-                        }
+            ArrayList<VirtualMachineProduct> products = new ArrayList<VirtualMachineProduct>();
+
+            try {
+                for( JSONObject p : provider.getReferenceDataCache().list(ReferenceDataCache.FLAVORS) ) {
+                    VirtualMachineProduct product = toProduct(p);
+
+                    if( product != null ) {
+                        products.add(product);
                     }
                 }
-                catch( JSONException e ) {
-                    std.error("listProducts(): Unable to identify expected values in JSON: " + e.getMessage());
-                    throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", "Missing JSON element for flavors: " + e.getMessage());
-                }
-                cachedProducts.put(provider.getContext().getRegionId(), Collections.unmodifiableCollection(products));
             }
-            return products;
+            catch( JSONException e ) {
+                std.error("listProducts(): Unable to identify expected values in JSON: " + e.getMessage());
+                throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", "Missing JSON element for flavors: " + e.getMessage());
+            }
+            return Collections.unmodifiableList(products);
         }
         finally {
             if( std.isTraceEnabled() ) {
@@ -491,22 +599,39 @@ public class CloudServers implements VirtualMachineSupport {
             if( !provider.isMyRegion() ) {
                 return Collections.emptyList();
             }
-            RackspaceMethod method = new RackspaceMethod(provider);
-            JSONObject ob = method.getServers("/servers", null);
+            ServerInventory inventory = provider.getServerInventory();
             ArrayList<VirtualMachine> servers = new ArrayList<VirtualMachine>();
-            
-            try {
-                if( ob.has("servers") ) {
-                    JSONArray list = ob.getJSONArray("servers");
-                    
-                    for( int i=0; i<list.length(); i++ ) {
-                        JSONObject server = list.getJSONObject(i);
+
+            if( inventory.isEnabled() ) {
+                try {
+                    for( JSONObject server : inventory.getServers() ) {
                         VirtualMachine vm = toVirtualMachine(server);
-                        
+
                         if( vm != null ) {
                             servers.add(vm);
                         }
+                    }
+                }
+                catch( JSONException e ) {
+                    std.error("listVirtualMachines(): Unable to identify expected values in JSON: " + e.getMessage());
+                    throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", "Missing JSON element for servers");
+                }
+                return servers;
+            }
+            RackspaceMethod method = new RackspaceMethod(provider);
+            JSONListReader reader = method.streamServers("/servers", "servers");
+
+            if( reader == null ) {
+                return servers;
+            }
+            try {
+                JSONObject server;
+
+                while( (server = reader.next()) != null ) {
+                    VirtualMachine vm = toVirtualMachine(server);
                         
+                    if( vm != null ) {
+                        servers.add(vm);
                     }
                 }
             }
@@ -514,6 +639,9 @@ public class CloudServers implements VirtualMachineSupport {
                 std.error("listVirtualMachines(): Unable to identify expected values in JSON: " + e.getMessage());
                 throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", "Missing JSON element for servers");
             }
+            finally {
+                reader.close();
+            }
             return servers;
         }
         finally {
@@ -550,6 +678,7 @@ public class CloudServers implements VirtualMachineSupport {
             RackspaceMethod method = new RackspaceMethod(provider);
             
             method.postServers("/servers", vmId, new JSONObject(json));
+            provider.getServerInventory().expire();
         }
         finally {
             if( logger.isTraceEnabled() ) {
@@ -617,6 +746,7 @@ public class CloudServers implements VirtualMachineSupport {
             do {
                 try {
                     method.deleteServers("/servers", vmId);
+                    provider.getServerInventory().expire();
                     return;
                 }
                 catch( RackspaceException e ) {
@@ -645,6 +775,78 @@ public class CloudServers implements VirtualMachineSupport {
         // NO-OP
     }
 
+    private @Nonnull VirtualMachine create(@Nonnull VMLaunchOptions withLaunchOptions, @Nonnull Map<String,Object> metaData, @Nonnull String name) throws CloudException, InternalException {
+        Logger logger = RackspaceCloud.getLogger(CloudServers.class, "std");
+        HashMap<String,Object> wrapper = new HashMap<String,Object>();
+        HashMap<String,Object> json = new HashMap<String,Object>();
+
+        json.put("imageId", Long.parseLong(withLaunchOptions.getMachineImageId()));
+        json.put("flavorId", Long.parseLong(withLaunchOptions.getStandardProductId()));
+        json.put("metadata", metaData);
+        json.put("name", name);
+
+        wrapper.put("server", json);
+        RackspaceMethod method = new RackspaceMethod(provider);
+        JSONObject result = method.postServers("/servers", null, new JSONObject(wrapper));
+
+        provider.getServerInventory().expire();
+
+        if( result.has("server") ) {
+            try {
+                JSONObject server = result.getJSONObject("server");
+                VirtualMachine vm = toVirtualMachine(server);
+
+                if( vm != null ) {
+                    return vm;
+                }
+            }
+            catch( JSONException e ) {
+                logger.error("launch(): Unable to understand launch response: " + e.getMessage());
+                if( logger.isTraceEnabled() ) {
+                    e.printStackTrace();
+                }
+                throw new CloudException(e);
+            }
+        }
+        logger.error("launch(): No server was created by the launch attempt, and no error was returned");
+        throw new CloudException("No virtual machine was launched");
+    }
+
+    /**
+     * Builds the server metadata for a launch. The friendly name is only stored, as <code>dsnName</code>, if there
+     * is room for it among the {@link #TAG_LIMIT} tags; the host name must then be a safe name.
+     */
+    private @Nonnull Map<String,Object> toMetaData(@Nonnull VMLaunchOptions withLaunchOptions, @Nonnull MachineImage targetImage) {
+        Map<String,Object> meta = withLaunchOptions.getMetaData();
+        HashMap<String,Object> metaData = new HashMap<String,Object>();
+        int tagCount = 0;
+
+        if( meta != null ) {
+            for( Map.Entry<String,Object> tag : meta.entrySet() ) {
+                if( tag.getKey() != null && tag.getValue() != null && tag.getKey().length() > 0 && tag.getValue().toString().length() > 0 ) {
+                    metaData.put(tag.getKey(), tag.getValue());
+                    tagCount++;
+                    if( tagCount >= TAG_LIMIT ) {
+                        break;
+                    }
+                }
+            }
+        }
+        if( tagCount < TAG_LIMIT && !targetImage.getPlatform().equals(Platform.UNKNOWN) ) {
+            metaData.put("dsnPlatform", targetImage.getPlatform().name());
+            tagCount++;
+        }
+        if( tagCount < TAG_LIMIT ) {
+            metaData.put("dsnDescription", withLaunchOptions.getDescription());
+            tagCount++;
+        }
+        if( tagCount < TAG_LIMIT ) {
+            metaData.put("dsnName", withLaunchOptions.getFriendlyName());
+        }
+        metaData.put("dsnTrueImage", targetImage.getProviderMachineImageId());
+        return metaData;
+    }
+
     private @Nullable VirtualMachineProduct toProduct(@Nullable JSONObject json) throws JSONException, InternalException, CloudException {
         Logger std = RackspaceCloud.getLogger(CloudServers.class, "std");
         
@@ -855,12 +1057,9 @@ public class CloudServers implements VirtualMachineSupport {
             if( vm.getPlatform().equals(Platform.UNKNOWN) ) {
                 Platform p = Platform.guess(vm.getName() + " " + vm.getDescription());
                 
-                if( p.equals(Platform.UNKNOWN) ) {
-                    MachineImage img = provider.getComputeServices().getImageSupport().getMachineImage(vm.getProviderMachineImageId());
-                    
-                    if( img != null ) {
-                        p = img.getPlatform();
-                    }
+                if( p.equals(Platform.UNKNOWN) && vm.getProviderMachineImageId() != null ) {
+                    // resolved from the shared catalog so that a listing does not cost a request per server
+                    p = new ImageCatalog(provider).getPlatform(vm.getProviderMachineImageId());
                 }
                 vm.setPlatform(p);
             }
@@ -873,16 +1072,21 @@ public class CloudServers implements VirtualMachineSupport {
         }
     }
 
-    private boolean serverExists(String name) throws InternalException, CloudException {
+    /**
+     * @return the lower case names of all current servers, from a single listing
+     */
+    private @Nonnull Set<String> getServerNames() throws InternalException, CloudException {
+        HashSet<String> names = new HashSet<String>();
+
         for( VirtualMachine vm : listVirtualMachines() ) {
-            if( vm.getName().equalsIgnoreCase(name) ) {
-                return true;
+            if( vm.getName() != null ) {
+                names.add(vm.getName().toLowerCase());
             }
         }
-        return false;
+        return names;
     }
-    
-    private String makeUpName(String name) throws InternalException, CloudException {
+
+    private String makeUpName(String name, Set<String> taken) {
         StringBuilder str = new StringBuilder();
         char last = '\0';
         
@@ -903,13 +1107,21 @@ public class CloudServers implements VirtualMachineSupport {
         String test = name;
         int idx = 1;
         
-        while( serverExists(test) && idx<1000000 ) {
+        while( taken.contains(test.toLowerCase()) && idx<1000000 ) {
             test = name + "-" + (idx++);
         }
+        taken.add(test.toLowerCase());
         return test;
     }
     
     private String validateName(String name, boolean safeName) throws InternalException, CloudException {
+        return validateName(name, safeName, getServerNames());
+    }
+
+    /**
+     * Cleans up a server name and makes it unique against the specified names, to which the chosen name is added.
+     */
+    private String validateName(String name, boolean safeName, Set<String> taken) {
         if( safeName ) {
             name = name.toLowerCase().replaceAll(" ", "-");
         }
@@ -937,18 +1149,15 @@ public class CloudServers implements VirtualMachineSupport {
             }
         }
         if( str.length() < 1 ) {
-            return makeUpName(name);
+            return makeUpName(name, taken);
         }
         name = str.toString();
         while( !Character.isLetterOrDigit(name.charAt(name.length()-1)) ) {
             if( name.length() < 2 ) {
-                return makeUpName(name);
+                return makeUpName(name, taken);
             }
             name = name.substring(0, name.length()-1);
         }
-        if( serverExists(name) ) {
-            return makeUpName(name);
-        }
-        return name;
+        return makeUpName(name, taken);
     }
 }
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.rackspace.compute;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.compute.MachineImage;
+import org.dasein.cloud.compute.Platform;
+import org.dasein.cloud.rackspace.RackspaceCloud;
+import org.dasein.cloud.rackspace.ReferenceDataCache;
+import org.json.JSONException;
+
+/**
+ * Image lookups for the compute services, answered from the shared {@link ReferenceDataCache#IMAGES} table so
+ * that server listings and launches do not cost a request per image. It holds no state of its own and is
+ * created for each use.
+ */
+public class ImageCatalog {
+    private RackspaceCloud provider;
+
+    public ImageCatalog(@Nonnull RackspaceCloud provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * Looks up an image in the shared table first, and asks the cloud only for images newer than the table.
+     * @return the image, or null if it does not exist
+     */
+    public @Nullable MachineImage getImage(@Nonnull String imageId) throws CloudException, InternalException {
+        MachineImage img = getCachedImage(imageId);
+
+        if( img != null ) {
+            return img;
+        }
+        return provider.getComputeServices().getImageSupport().getImage(imageId);
+    }
+
+    /**
+     * @return the platform of the image as of the shared table, or {@link Platform#UNKNOWN} if it is not in the table
+     */
+    public @Nonnull Platform getPlatform(@Nonnull String imageId) throws CloudException, InternalException {
+        MachineImage img = getCachedImage(imageId);
+
+        return (img == null ? Platform.UNKNOWN : img.getPlatform());
+    }
+
+    /**
+     * Forces the next lookup to load the shared table again, as after an image is captured or removed.
+     */
+    public void invalidate() throws CloudException {
+        provider.getReferenceDataCache().invalidate(ReferenceDataCache.IMAGES);
+    }
+
+    private @Nullable MachineImage getCachedImage(@Nonnull String imageId) throws CloudException, InternalException {
+        try {
+            return new CloudServerImages(provider).toImage(provider.getReferenceDataCache().get(ReferenceDataCache.IMAGES, imageId));
+        }
+        catch( JSONException e ) {
+            throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", "Missing JSON element for images: " + e.getMessage());
+        }
+    }
+}
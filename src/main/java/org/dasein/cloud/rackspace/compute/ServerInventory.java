@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.rackspace.compute;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.rackspace.JSONListReader;
+import org.dasein.cloud.rackspace.RackspaceCloud;
+import org.dasein.cloud.rackspace.RackspaceMethod;
+import org.dasein.util.CalendarWrapper;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Opt-in, provider-scoped copy of the server listing from which {@link CloudServers} answers listings and lookups.
+ * The first use downloads <code>/servers/detail</code> once; after that, a listing older than the staleness bound
+ * is brought up to date by asking only for the servers that changed since the last refresh
+ * (<code>changes-since</code>), dropping the deleted ones. Turn it on with <code>serverInventory=true</code> and
+ * set the staleness bound with <code>serverInventoryStaleness</code> (seconds).
+ */
+public class ServerInventory {
+    static public final long DEFAULT_STALENESS = 30 * CalendarWrapper.SECOND;
+
+    // asks for changes a little further back than needed so that clock skew with the cloud cannot lose any
+    static private final long OVERLAP = CalendarWrapper.MINUTE;
+
+    private boolean                          enabled;
+    private AtomicLong                       fullLoads = new AtomicLong(0L);
+    private AtomicLong                       hits = new AtomicLong(0L);
+    private AtomicLong                       incrementalLoads = new AtomicLong(0L);
+    private volatile long                    lastRefresh;
+    private RackspaceCloud                   provider;
+    private volatile Map<String,JSONObject>  servers;
+    private long                             since;
+    private long                             staleness;
+
+    public ServerInventory(@Nonnull RackspaceCloud provider, @Nonnull ProviderContext ctx) {
+        Properties p = ctx.getCustomProperties();
+
+        this.provider = provider;
+        enabled = (p != null && "true".equalsIgnoreCase(p.getProperty("serverInventory")));
+        staleness = RackspaceCloud.getLongProperty(p, "serverInventoryStaleness", DEFAULT_STALENESS/CalendarWrapper.SECOND) * CalendarWrapper.SECOND;
+    }
+
+    private void apply(@Nonnull JSONObject changes) throws JSONException {
+        JSONArray list = changes.optJSONArray("servers");
+
+        if( list == null || list.length() < 1 ) {
+            return;
+        }
+        LinkedHashMap<String,JSONObject> current = new LinkedHashMap<String, JSONObject>(servers);
+
+        for( int i=0; i<list.length(); i++ ) {
+            JSONObject server = list.getJSONObject(i);
+
+            if( !server.has("id") ) {
+                continue;
+            }
+            String id = String.valueOf(server.getLong("id"));
+
+            if( "deleted".equalsIgnoreCase(server.optString("status", "")) ) {
+                current.remove(id);
+            }
+            else {
+                current.put(id, server);
+            }
+        }
+        servers = Collections.unmodifiableMap(current);
+    }
+
+    /**
+     * Forces the next lookup to catch up with the cloud, for example after this client launched or terminated a server.
+     */
+    public void expire() {
+        lastRefresh = 0L;
+    }
+
+    public long getFullLoadCount() {
+        return fullLoads.get();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getIncrementalLoadCount() {
+        return incrementalLoads.get();
+    }
+
+    /**
+     * @return the JSON description of the server, or null if it was not in the cloud as of the last refresh
+     */
+    public @Nullable JSONObject getServer(@Nonnull String serverId) throws CloudException, InternalException {
+        return refresh().get(serverId);
+    }
+
+    /**
+     * @return the JSON descriptions of all servers, no staler than the staleness bound
+     */
+    public @Nonnull Collection<JSONObject> getServers() throws CloudException, InternalException {
+        return refresh().values();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void load(@Nonnull RackspaceMethod method) throws CloudException, InternalException {
+        JSONListReader reader = method.streamServers("/servers", "servers");
+        LinkedHashMap<String,JSONObject> current = new LinkedHashMap<String, JSONObject>();
+
+        if( reader != null ) {
+            try {
+                JSONObject server;
+
+                while( (server = reader.next()) != null ) {
+                    if( server.has("id") ) {
+                        current.put(String.valueOf(server.getLong("id")), server);
+                    }
+                }
+            }
+            catch( JSONException e ) {
+                throw new CloudException(CloudErrorType.COMMUNICATION, 200, "invalidJson", "Missing JSON element for servers");
+            }
+            finally {
+                reader.close();
+            }
+        }
+        servers = Collections.unmodifiableMap(current);
+    }
+
+    private @Nonnull Map<String,JSONObject> refresh() throws CloudException, InternalException {
+        Map<String,JSONObject> current = servers;
+
+        if( current != null && System.currentTimeMillis() - lastRefresh < staleness ) {
+            hits.incrementAndGet();
+            return current;
+        }
+        synchronized( this ) {
+            long start = System.currentTimeMillis();
+
+            current = servers;
+            if( current != null && start - lastRefresh < staleness ) {
+                // another thread refreshed the inventory while this one waited
+                hits.incrementAndGet();
+                return current;
+            }
+            RackspaceMethod method = new RackspaceMethod(provider);
+
+            if( current != null ) {
+                try {
+                    JSONObject changes = method.getServerChanges(since/CalendarWrapper.SECOND);
+
+                    if( changes != null ) {
+                        apply(changes);
+                    }
+                    incrementalLoads.incrementAndGet();
+                }
+                catch( JSONException e ) {
+                    RackspaceCloud.getLogger(ServerInventory.class, "std").warn("refresh(): Invalid server changes, loading all servers again: " + e.getMessage());
+                    current = null;
+                }
+                catch( CloudException e ) {
+                    RackspaceCloud.getLogger(ServerInventory.class, "std").warn("refresh(): Unable to load server changes, loading all servers again: " + e.getMessage());
+                    current = null;
+                }
+            }
+            if( current == null ) {
+                load(method);
+                fullLoads.incrementAndGet();
+            }
+            since = start - OVERLAP;
+            lastRefresh = start;
+            return servers;
+        }
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        Map<String,JSONObject> current = servers;
+
+        return "[servers=" + (current == null ? 0 : current.size()) + ",hits=" + hits.get() + ",incrementalLoads=" + incrementalLoads.get() + ",fullLoads=" + fullLoads.get() + "]";
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Default {@link MetricsCollector} that keeps running totals per operation in memory and optionally publishes
+ * each operation through a {@link JmxExporter}.
+ */
+public class InMemoryMetrics implements MetricsCollector {
+    private JmxExporter                             exporter;
+    private ConcurrentMap<String,OperationMetrics> operations = new ConcurrentHashMap<String, OperationMetrics>();
+
+    public InMemoryMetrics(@Nullable JmxExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    @Override
+    public void bytesDecompressed(@Nonnull String operation, @Nonnegative long compressed, @Nonnegative long decompressed) {
+        getOperation(operation).addBytesDecompressed(compressed, decompressed);
+    }
+
+    @Override
+    public void bytesReceived(@Nonnull String operation, @Nonnegative long bytes) {
+        getOperation(operation).addBytesReceived(bytes);
+    }
+
+    public void close() {
+        if( exporter != null ) {
+            exporter.close();
+        }
+    }
+
+    public @Nonnull OperationMetrics getOperation(@Nonnull String operation) {
+        OperationMetrics metrics = operations.get(operation);
+
+        if( metrics == null ) {
+            OperationMetrics current = operations.putIfAbsent(operation, metrics = new OperationMetrics(operation));
+
+            if( current != null ) {
+                return current;
+            }
+            if( exporter != null ) {
+                exporter.register(metrics);
+            }
+        }
+        return metrics;
+    }
+
+    public @Nonnull Collection<OperationMetrics> getOperations() {
+        return Collections.unmodifiableCollection(new ArrayList<OperationMetrics>(operations.values()));
+    }
+
+    @Override
+    public void requestCompleted(@Nonnull RequestSample sample) {
+        getOperation(sample.getOperation()).add(sample);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.rackspace.RackspaceCloud;
+
+/**
+ * Publishes {@link OperationMetrics} on the platform MBean server as
+ * <code>org.dasein.cloud.rackspace:type=Metrics,scope=&lt;scope&gt;,operation=&lt;operation&gt;</code>.
+ * Enable it with the <code>metricsJmx=true</code> custom property.
+ */
+public class JmxExporter {
+    static public final String DOMAIN = "org.dasein.cloud.rackspace";
+
+    private List<ObjectName> names = new ArrayList<ObjectName>();
+    private String           scope;
+    private MBeanServer      server;
+
+    public JmxExporter(@Nonnull String scope) {
+        this.scope = scope;
+        this.server = ManagementFactory.getPlatformMBeanServer();
+    }
+
+    public synchronized void close() {
+        Logger logger = RackspaceCloud.getLogger(JmxExporter.class, "std");
+
+        for( ObjectName name : names ) {
+            try {
+                server.unregisterMBean(name);
+            }
+            catch( JMException e ) {
+                logger.warn("close(): Unable to unregister " + name + ": " + e.getMessage());
+            }
+        }
+        names.clear();
+    }
+
+    public synchronized void register(@Nonnull OperationMetrics metrics) {
+        Logger logger = RackspaceCloud.getLogger(JmxExporter.class, "std");
+
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Metrics,scope=" + ObjectName.quote(scope) + ",operation=" + ObjectName.quote(metrics.getOperation()));
+
+            server.registerMBean(metrics, name);
+            names.add(name);
+        }
+        catch( JMException e ) {
+            logger.warn("register(): Unable to export metrics for " + metrics.getOperation() + ": " + e.getMessage());
+        }
+    }
+}
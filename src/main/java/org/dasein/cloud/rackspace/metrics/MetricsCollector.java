@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.metrics;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Receives measurements for every call made through <code>AbstractMethod</code>. Operations are labelled by endpoint
+ * family and action, for example <code>servers.list</code>, <code>files.put</code> or <code>lb.get</code>.
+ * Implementations are called from many request threads at once and must be thread safe. A custom implementation
+ * with a public no-argument constructor may be named in the <code>metricsCollector</code> custom property.
+ */
+public interface MetricsCollector {
+    /**
+     * Called as response body bytes are read off the wire, which may happen after {@link #requestCompleted(RequestSample)}.
+     */
+    public void bytesReceived(@Nonnull String operation, @Nonnegative long bytes);
+
+    /**
+     * Called as a compressed response body is inflated. <code>compressed</code> counts bytes read off the wire for
+     * that body (they are also reported through {@link #bytesReceived(String, long)}) and <code>decompressed</code>
+     * counts the bytes they inflated to; either may be zero on a given call.
+     */
+    public void bytesDecompressed(@Nonnull String operation, @Nonnegative long compressed, @Nonnegative long decompressed);
+
+    public void requestCompleted(@Nonnull RequestSample sample);
+}
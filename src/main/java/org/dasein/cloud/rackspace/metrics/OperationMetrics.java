@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Running totals and a latency histogram for one operation. Latencies fall into fixed buckets, so percentiles
+ * are reported as the upper bound of the bucket they land in.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+    static private final long[] BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 60000, Long.MAX_VALUE };
+
+    private AtomicLong                 bytesReceived  = new AtomicLong(0L);
+    private AtomicLong                 bytesSent      = new AtomicLong(0L);
+    private AtomicLong                 compressed     = new AtomicLong(0L);
+    private AtomicLong                 connectionWait = new AtomicLong(0L);
+    private AtomicLong                 decompressed   = new AtomicLong(0L);
+    private AtomicLongArray            histogram      = new AtomicLongArray(BOUNDS.length);
+    private AtomicLong                 maxLatency     = new AtomicLong(0L);
+    private String                     operation;
+    private AtomicLong                 requests       = new AtomicLong(0L);
+    private AtomicLong                 retries        = new AtomicLong(0L);
+    private Map<Integer,AtomicLong>    statusCodes    = new ConcurrentHashMap<Integer, AtomicLong>();
+    private AtomicLong                 tokenWait      = new AtomicLong(0L);
+
+    public OperationMetrics(@Nonnull String operation) {
+        this.operation = operation;
+    }
+
+    public void add(@Nonnull RequestSample sample) {
+        long latency = sample.getLatency();
+        int i = 0;
+
+        while( latency > BOUNDS[i] ) {
+            i++;
+        }
+        histogram.incrementAndGet(i);
+        requests.incrementAndGet();
+        retries.addAndGet(sample.getRetries());
+        bytesSent.addAndGet(sample.getBytesSent());
+        connectionWait.addAndGet(sample.getConnectionWait());
+        tokenWait.addAndGet(sample.getTokenWait());
+        while( true ) {
+            long max = maxLatency.get();
+
+            if( latency <= max || maxLatency.compareAndSet(max, latency) ) {
+                break;
+            }
+        }
+        AtomicLong count = statusCodes.get(sample.getStatusCode());
+
+        if( count == null ) {
+            synchronized( statusCodes ) {
+                count = statusCodes.get(sample.getStatusCode());
+                if( count == null ) {
+                    count = new AtomicLong(0L);
+                    statusCodes.put(sample.getStatusCode(), count);
+                }
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    public void addBytesDecompressed(@Nonnegative long compressedBytes, @Nonnegative long decompressedBytes) {
+        compressed.addAndGet(compressedBytes);
+        decompressed.addAndGet(decompressedBytes);
+    }
+
+    public void addBytesReceived(@Nonnegative long bytes) {
+        bytesReceived.addAndGet(bytes);
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public long getCompressedBytesReceived() {
+        return compressed.get();
+    }
+
+    /**
+     * @return decompressed bytes per compressed byte received for this operation, or 0 if nothing arrived compressed
+     */
+    @Override
+    public double getCompressionRatio() {
+        long c = compressed.get();
+
+        return (c < 1L ? 0.0 : ((double)decompressed.get())/c);
+    }
+
+    @Override
+    public long getConnectionWaitTime() {
+        return connectionWait.get();
+    }
+
+    @Override
+    public long getDecompressedBytes() {
+        return decompressed.get();
+    }
+
+    @Override
+    public long getLatencyP50() {
+        return getPercentile(0.50);
+    }
+
+    @Override
+    public long getLatencyP99() {
+        return getPercentile(0.99);
+    }
+
+    @Override
+    public @Nonnull String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @param fraction the percentile wanted, between 0 and 1
+     * @return the upper latency bound in milliseconds of the bucket holding that percentile
+     */
+    public long getPercentile(double fraction) {
+        long[] counts = new long[BOUNDS.length];
+        long total = 0L;
+
+        for( int i=0; i<counts.length; i++ ) {
+            counts[i] = histogram.get(i);
+            total += counts[i];
+        }
+        if( total < 1L ) {
+            return 0L;
+        }
+        long target = (long)Math.ceil(total * fraction);
+        long seen = 0L;
+
+        for( int i=0; i<counts.length; i++ ) {
+            seen += counts[i];
+            if( seen >= target ) {
+                return Math.min(BOUNDS[i], maxLatency.get());
+            }
+        }
+        return maxLatency.get();
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public @Nonnull Map<Integer,Long> getStatusCodeCounts() {
+        TreeMap<Integer,Long> counts = new TreeMap<Integer, Long>();
+
+        for( Map.Entry<Integer,AtomicLong> entry : statusCodes.entrySet() ) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    @Override
+    public @Nonnull String getStatusCodes() {
+        return getStatusCodeCounts().toString();
+    }
+
+    @Override
+    public long getTokenWaitTime() {
+        return tokenWait.get();
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        return operation + " (" + getRequestCount() + " requests, p50=" + getLatencyP50() + "ms, p99=" + getLatencyP99() + "ms)";
+    }
+}
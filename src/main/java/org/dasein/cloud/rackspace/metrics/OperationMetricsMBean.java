@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.metrics;
+
+public interface OperationMetricsMBean {
+    public long getBytesReceived();
+
+    public long getBytesSent();
+
+    public long getCompressedBytesReceived();
+
+    public double getCompressionRatio();
+
+    public long getConnectionWaitTime();
+
+    public long getDecompressedBytes();
+
+    public long getLatencyP50();
+
+    public long getLatencyP99();
+
+    public String getOperation();
+
+    public long getRequestCount();
+
+    public long getRetryCount();
+
+    public String getStatusCodes();
+
+    public long getTokenWaitTime();
+}
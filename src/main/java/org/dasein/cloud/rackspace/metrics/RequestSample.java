@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.metrics;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Measurements for a single logical call, covering every retry made on its behalf. The status code is 0 when
+ * the call failed without a response.
+ */
+public class RequestSample {
+    private long   bytesSent;
+    private long   connectionWait;
+    private long   latency;
+    private String operation;
+    private int    retries;
+    private int    statusCode;
+    private long   tokenWait;
+
+    public RequestSample(@Nonnull String operation, int statusCode, @Nonnegative long latency, @Nonnegative int retries, @Nonnegative long bytesSent, @Nonnegative long connectionWait, @Nonnegative long tokenWait) {
+        this.operation = operation;
+        this.statusCode = statusCode;
+        this.latency = latency;
+        this.retries = retries;
+        this.bytesSent = bytesSent;
+        this.connectionWait = connectionWait;
+        this.tokenWait = tokenWait;
+    }
+
+    public @Nonnegative long getBytesSent() {
+        return bytesSent;
+    }
+
+    public @Nonnegative long getConnectionWait() {
+        return connectionWait;
+    }
+
+    public @Nonnegative long getLatency() {
+        return latency;
+    }
+
+    public @Nonnull String getOperation() {
+        return operation;
+    }
+
+    public @Nonnegative int getRetries() {
+        return retries;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public @Nonnegative long getTokenWait() {
+        return tokenWait;
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        return operation + " [" + statusCode + "] " + latency + "ms";
+    }
+}
@@ -45,9 +45,11 @@ import org.dasein.cloud.network.LoadBalancer;
 import org.dasein.cloud.network.LoadBalancerAddressType;
 import org.dasein.cloud.network.LoadBalancerState;
 import org.dasein.cloud.network.LoadBalancerSupport;
+import org.dasein.cloud.rackspace.JSONListReader;
 import org.dasein.cloud.rackspace.RackspaceCloud;
 import org.dasein.cloud.rackspace.RackspaceException;
 import org.dasein.cloud.rackspace.RackspaceMethod;
+import org.dasein.cloud.rackspace.ReferenceDataCache;
 import org.dasein.util.CalendarWrapper;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -237,16 +239,13 @@ public class CloudLoadBalancers implements LoadBalancerSupport {
                 logger.error("create(): Invalid protocol: " + listeners[0].getNetworkProtocol());
                 throw new CloudException("Unsupported protocol: " + listeners[0].getNetworkProtocol());
             }
-            if( listeners[0].getAlgorithm().equals(LbAlgorithm.LEAST_CONN) ) {
-                lb.put("algorithm", "LEAST_CONNECTIONS");
-            }
-            else if( listeners[0].getAlgorithm().equals(LbAlgorithm.ROUND_ROBIN) ) {
-                lb.put("algorithm", "ROUND_ROBIN");
-            }
-            else {
+            String algorithm = toAlgorithmName(listeners[0].getAlgorithm());
+
+            if( algorithm == null || !isAlgorithmOffered(algorithm) ) {
                 logger.error("create(): Invalid algorithm: " + listeners[0].getAlgorithm());
                 throw new CloudException("Unsupported algorithm: " + listeners[0].getAlgorithm());
             }
+            lb.put("algorithm", algorithm);
             ArrayList<Map<String,Object>> ips = new ArrayList<Map<String,Object>>();
             HashMap<String,Object> ip = new HashMap<String,Object>();
             
@@ -328,31 +327,17 @@ public class CloudLoadBalancers implements LoadBalancerSupport {
     }
 
     private String matchProtocol(int port) throws CloudException, InternalException {
-        RackspaceMethod method = new RackspaceMethod(provider);
-        JSONObject ob = method.getLoadBalancers("/loadbalancers", "protocols");
-        
-        if( ob == null ) {
-            return "TCP";
-        }
-        else {
-            if( ob.has("protocols") ) {
-                try {
-                    JSONArray list = ob.getJSONArray("protocols");
-                    
-                    for( int i=0; i<list.length(); i++ ) {
-                        JSONObject p = list.getJSONObject(i);
-                        
-                        if( p.has("port") && p.getInt("port") == port ) {
-                            return p.getString("name");
-                        }
-                    }
-                }
-                catch( JSONException e ) {
-                    throw new CloudException("Unable to parse protocols from Rackspace: " + e.getMessage());
+        try {
+            for( JSONObject p : provider.getReferenceDataCache().list(ReferenceDataCache.PROTOCOLS) ) {
+                if( p.has("port") && p.getInt("port") == port ) {
+                    return p.getString("name");
                 }
             }
-            return "TCP";
         }
+        catch( JSONException e ) {
+            throw new CloudException("Unable to parse protocols from Rackspace: " + e.getMessage());
+        }
+        return "TCP";
     }
 
     @Override
@@ -418,18 +403,25 @@ public class CloudLoadBalancers implements LoadBalancerSupport {
         return status;
     }
 
-    static private transient Collection<LbAlgorithm> supportedAlgorithms;
-    
+    /**
+     * @return true if the cloud offers the algorithm, or does not say which algorithms it offers
+     */
+    private boolean isAlgorithmOffered(@Nonnull String algorithm) throws CloudException, InternalException {
+        ReferenceDataCache cache = provider.getReferenceDataCache();
+
+        return (cache.get(ReferenceDataCache.ALGORITHMS, algorithm) != null || cache.list(ReferenceDataCache.ALGORITHMS).isEmpty());
+    }
+
     @Override
     public Iterable<LbAlgorithm> listSupportedAlgorithms() throws CloudException, InternalException {
-        if( supportedAlgorithms == null ) {
-            ArrayList<LbAlgorithm> algorithms = new ArrayList<LbAlgorithm>();
-            
-            algorithms.add(LbAlgorithm.ROUND_ROBIN);
-            algorithms.add(LbAlgorithm.LEAST_CONN);
-            supportedAlgorithms = Collections.unmodifiableList(algorithms);
+        ArrayList<LbAlgorithm> algorithms = new ArrayList<LbAlgorithm>();
+
+        for( LbAlgorithm algorithm : new LbAlgorithm[] { LbAlgorithm.ROUND_ROBIN, LbAlgorithm.LEAST_CONN } ) {
+            if( isAlgorithmOffered(toAlgorithmName(algorithm)) ) {
+                algorithms.add(algorithm);
+            }
         }
-        return supportedAlgorithms;
+        return Collections.unmodifiableList(algorithms);
     }
 
     @Override
@@ -495,30 +487,37 @@ public class CloudLoadBalancers implements LoadBalancerSupport {
         }
         try {
             RackspaceMethod method = new RackspaceMethod(provider);
-            JSONObject ob = method.getLoadBalancers("/loadbalancers", null);  
+            JSONListReader reader = method.streamLoadBalancers("/loadbalancers", "loadBalancers");
             
             try {
                 ArrayList<LoadBalancer> loadBalancers = new ArrayList<LoadBalancer>();
+                ArrayList<String> ids = new ArrayList<String>();
                 
-                if( ob.has("loadBalancers") ) {
-                    JSONArray lbs = ob.getJSONArray("loadBalancers");
-                    
-                    if( lbs.length() > 0 ) {
-                        Iterable<VirtualMachine> vms = provider.getComputeServices().getVirtualMachineSupport().listVirtualMachines();
+                if( reader != null ) {
+                    try {
+                        JSONObject tmp;
 
-                        for( int i=0; i<lbs.length(); i++ ) {
-                            JSONObject tmp = lbs.getJSONObject(i);
-                            
+                        while( (tmp = reader.next()) != null ) {
                             if( tmp.has("id") ) {
-                                JSONObject actual = method.getLoadBalancers("/loadbalancers", tmp.getString("id"));
+                                ids.add(tmp.getString("id"));
+                            }
+                        }
+                    }
+                    finally {
+                        reader.close();
+                    }
+                }
+                if( ids.size() > 0 ) {
+                    Iterable<VirtualMachine> vms = provider.getComputeServices().getVirtualMachineSupport().listVirtualMachines();
+
+                    for( String id : ids ) {
+                        JSONObject actual = method.getLoadBalancers("/loadbalancers", id);
                                 
-                                if( actual != null && actual.has("loadBalancer") ) {
-                                    LoadBalancer lb = this.toLoadBalancer(actual.getJSONObject("loadBalancer"), vms);
+                        if( actual != null && actual.has("loadBalancer") ) {
+                            LoadBalancer lb = this.toLoadBalancer(actual.getJSONObject("loadBalancer"), vms);
                                 
-                                    if( lb != null ) {
-                                        loadBalancers.add(lb);
-                                    }
-                                }
+                            if( lb != null ) {
+                                loadBalancers.add(lb);
                             }
                         }
                     }
@@ -678,6 +677,16 @@ public class CloudLoadBalancers implements LoadBalancerSupport {
         method.deleteLoadBalancers("/loadbalancers", fromLoadBalancerId + "/nodes?" + nodeString.toString());
     }
     
+    private String toAlgorithmName(LbAlgorithm algorithm) {
+        if( algorithm.equals(LbAlgorithm.LEAST_CONN) ) {
+            return "LEAST_CONNECTIONS";
+        }
+        else if( algorithm.equals(LbAlgorithm.ROUND_ROBIN) ) {
+            return "ROUND_ROBIN";
+        }
+        return null;
+    }
+
     private LoadBalancer toLoadBalancer(JSONObject json, Iterable<VirtualMachine> possibleNodes) throws JSONException, CloudException {
         LoadBalancer loadBalancer = new LoadBalancer();
         
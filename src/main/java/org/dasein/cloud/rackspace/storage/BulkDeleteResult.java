@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.storage;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Outcome of deleting many objects at once. Objects that were already gone count as not found rather than as
+ * failures; every other failure is reported against the path of its object.
+ */
+public class BulkDeleteResult {
+    private int                 deleted;
+    private Map<String,String>  errors = new TreeMap<String, String>();
+    private int                 notFound;
+
+    synchronized void addDeleted(int count) {
+        deleted += count;
+    }
+
+    synchronized void addError(@Nonnull String path, @Nonnull String reason) {
+        errors.put(path, reason);
+    }
+
+    synchronized void addNotFound(int count) {
+        notFound += count;
+    }
+
+    public synchronized int getDeletedCount() {
+        return deleted;
+    }
+
+    /**
+     * @return the reason each object could not be deleted, keyed by <code>container/object</code>
+     */
+    public synchronized @Nonnull Map<String,String> getErrors() {
+        return Collections.unmodifiableMap(new TreeMap<String, String>(errors));
+    }
+
+    public synchronized int getNotFoundCount() {
+        return notFound;
+    }
+
+    public synchronized boolean isSuccessful() {
+        return errors.isEmpty();
+    }
+
+    @Override
+    public synchronized @Nonnull String toString() {
+        return "[deleted=" + deleted + ",notFound=" + notFound + ",errors=" + errors.size() + "]";
+    }
+}
@@ -18,17 +18,35 @@
 
 package org.dasein.cloud.rackspace.storage;
 
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
 import org.apache.log4j.Logger;
 import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
@@ -38,6 +56,8 @@ import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.identity.ServiceAction;
 import org.dasein.cloud.rackspace.AuthenticationContext;
 import org.dasein.cloud.rackspace.CloudFilesMethod;
+import org.dasein.cloud.rackspace.FileSegmentEntity;
+import org.dasein.cloud.rackspace.ObjectMetadataCache;
 import org.dasein.cloud.rackspace.RackspaceCloud;
 import org.dasein.cloud.storage.AbstractBlobStoreSupport;
 import org.dasein.cloud.storage.Blob;
@@ -47,6 +67,9 @@ import org.dasein.util.JiteratorPopulator;
 import org.dasein.util.PopulatorThread;
 import org.dasein.util.uom.storage.Byte;
 import org.dasein.util.uom.storage.Storage;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -55,8 +78,19 @@ public class CloudFiles extends AbstractBlobStoreSupport {
     static public final int                                       MAX_BUCKETS     = 100;
     static public final int                                       MAX_OBJECTS     = -1;
     static public final Storage<Byte> MAX_OBJECT_SIZE = new Storage<org.dasein.util.uom.storage.Byte>(5000000000L, Storage.BYTE);
-
-    private RackspaceCloud provider = null;
+    static public final Storage<Byte> MAX_LARGE_OBJECT_SIZE = new Storage<org.dasein.util.uom.storage.Byte>(Long.MAX_VALUE, Storage.BYTE);
+    static public final int                                       DEFAULT_COPY_THREADS = 10;
+    static public final long                                      DEFAULT_SEGMENT_SIZE = 512L * 1024L * 1024L;
+    static public final int                                       DEFAULT_SEGMENT_THREADS = 4;
+    static public final String                                    SEGMENT_CONTAINER_SUFFIX = "_segments";
+    static public final int                                       DEFAULT_DELETE_THREADS = 10;
+    static public final int                                       DEFAULT_DOWNLOAD_THREADS = 4;
+    static public final long                                      DEFAULT_RANGE_SIZE = 64L * 1024L * 1024L;
+    static public final int                                       DEFAULT_TRANSFER_RETRIES = 10;
+
+    private RackspaceCloud   provider = null;
+    // false once the account has answered a bulk delete with 404 or 501, meaning the middleware is not installed
+    private volatile Boolean bulkDelete;
 
     CloudFiles(@Nonnull RackspaceCloud provider) { this.provider = provider; }
 
@@ -167,12 +201,7 @@ public class CloudFiles extends AbstractBlobStoreSupport {
             try {
                 CloudFilesMethod method = new CloudFilesMethod(provider);
 
-                for( String container : method.get(null) ) {
-                    if( container.equals(bucketName) ) {
-                        return true;
-                    }
-                }
-                return false;
+                return (method.head(bucketName) != null);
             }
             catch( RuntimeException e ) {
                 logger.error("Could not retrieve file info for " + bucketName + ": " + e.getMessage());
@@ -189,16 +218,13 @@ public class CloudFiles extends AbstractBlobStoreSupport {
 
     @Override
     public Blob getBucket(@Nonnull String bucketName) throws InternalException, CloudException {
-        for( Blob blob : list(null) ) {
-            if( blob.isContainer() ) {
-                String name = blob.getBucketName();
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+        Map<String,String> metaData = method.head(bucketName);
 
-                if( name != null && name.equals(bucketName) ) {
-                    return blob;
-                }
-            }
+        if( metaData == null ) {
+            return null;
         }
-        return null;
+        return Blob.getInstance(getRegionId(), "/" + bucketName, bucketName, getMetaDataTimestamp(metaData));
     }
 
     @Override
@@ -206,14 +232,12 @@ public class CloudFiles extends AbstractBlobStoreSupport {
         if( bucketName == null ) {
             throw new CloudException("No bucket was specified for this request");
         }
-        for( Blob blob : list(bucketName) ) {
-            String name = blob.getObjectName();
+        Map<String,String> metaData = head(bucketName, objectName);
 
-            if( name != null && name.equals(objectName) ) {
-                return blob;
-            }
+        if( metaData == null ) {
+            return null;
         }
-        return null;
+        return Blob.getInstance(getRegionId(), "/" + bucketName + "/" + objectName, bucketName, objectName, getMetaDataTimestamp(metaData), new Storage<Byte>(getMetaDataLength(metaData), Storage.BYTE));
     }
 
     @Override
@@ -230,9 +254,7 @@ public class CloudFiles extends AbstractBlobStoreSupport {
             if( object == null ) {
                 return null;
             }
-            CloudFilesMethod method = new CloudFilesMethod(provider);
-
-            Map<String,String> metaData = method.head(bucket, object);
+            Map<String,String> metaData = head(bucket, object);
 
             if( metaData == null ) {
                 return null;
@@ -251,6 +273,55 @@ public class CloudFiles extends AbstractBlobStoreSupport {
         }
     }
 
+    /**
+     * Fetches the metadata of an object through the provider's {@link ObjectMetadataCache}, revalidating expired
+     * entries with their ETag rather than downloading the metadata again.
+     * @return the metadata of the object, or null if it does not exist
+     */
+    private @Nullable Map<String,String> head(@Nonnull String bucket, @Nonnull String object) throws CloudException, InternalException {
+        ObjectMetadataCache cache = provider.getObjectMetadataCache();
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+
+        if( !cache.isEnabled() ) {
+            return method.head(bucket, object);
+        }
+        ObjectMetadataCache.Entry entry = cache.get(bucket, object);
+
+        if( entry != null && !entry.isExpired() ) {
+            cache.hit();
+            return entry.getMetaData();
+        }
+        Map<String,String> metaData;
+
+        if( entry != null && entry.getETag() != null ) {
+            metaData = method.headIfChanged(bucket, object, entry.getETag());
+            if( metaData != null && metaData.isEmpty() ) {
+                cache.revalidated(entry);
+                return entry.getMetaData();
+            }
+        }
+        else {
+            metaData = method.head(bucket, object);
+        }
+        cache.miss();
+        cache.put(bucket, object, metaData);
+        return metaData;
+    }
+
+    private @Nonnull String getRegionId() throws CloudException {
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new CloudException("No context was specified for this request");
+        }
+        String regionId = ctx.getRegionId();
+
+        if( regionId == null ) {
+            throw new CloudException("No region ID was specified");
+        }
+        return regionId;
+    }
+
     @Override
     public int getMaxBuckets() throws CloudException, InternalException {
         return MAX_BUCKETS;
@@ -317,11 +388,37 @@ public class CloudFiles extends AbstractBlobStoreSupport {
                 }
             }
             CloudFilesMethod method = new CloudFilesMethod(provider);
+            ProviderContext ctx = provider.getContext();
+            int threads = (int)RackspaceCloud.getLongProperty(ctx == null ? null : ctx.getCustomProperties(), "downloadThreads", DEFAULT_DOWNLOAD_THREADS);
+            long rangeSize = RackspaceCloud.getLongProperty(ctx == null ? null : ctx.getCustomProperties(), "rangeSize", DEFAULT_RANGE_SIZE);
+
             InputStream input;
 
-            input = method.get(bucket, location);
-            if( input == null ) {
-                throw new CloudException("No such object: " + bucket + "/" + location);
+            if( threads > 1 ) {
+                // the first range tells us how long the object is, so one that fits in a range costs a single request
+                Map<String,String> metaData = new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
+
+                input = method.get(bucket, location, 0L, rangeSize - 1, null, metaData);
+                if( input == null ) {
+                    throw new CloudException("No such object: " + bucket + "/" + location);
+                }
+                long length = getMetaDataRangeLength(metaData);
+
+                if( length < 0L ) {
+                    try { input.close(); }
+                    catch( IOException ignore ) { }
+                    throw new CloudException("No Content-Range in the first range of " + bucket + "/" + location);
+                }
+                if( length > rangeSize ) {
+                    getRanged(bucket, location, toFile, length, metaData, input, rangeSize, threads, transfer);
+                    return;
+                }
+            }
+            else {
+                input = method.get(bucket, location);
+                if( input == null ) {
+                    throw new CloudException("No such object: " + bucket + "/" + location);
+                }
             }
             try {
                 copy(input, new FileOutputStream(toFile), transfer);
@@ -337,9 +434,155 @@ public class CloudFiles extends AbstractBlobStoreSupport {
         }
     }
 
+    /**
+     * @return the number of times a segment, range or copy that failed with a transient error is tried again
+     */
+    private int getTransferRetries() {
+        ProviderContext ctx = provider.getContext();
+        Properties p = (ctx == null ? null : ctx.getCustomProperties());
+
+        if( p != null && "0".equals(p.getProperty("transferRetries")) ) {
+            return 0;
+        }
+        return (int)RackspaceCloud.getLongProperty(p, "transferRetries", DEFAULT_TRANSFER_RETRIES);
+    }
+
+    private long getSegmentSize() {
+        ProviderContext ctx = provider.getContext();
+        long size = RackspaceCloud.getLongProperty(ctx == null ? null : ctx.getCustomProperties(), "segmentSize", DEFAULT_SEGMENT_SIZE);
+
+        return Math.min(size, MAX_OBJECT_SIZE.longValue());
+    }
+
+    /**
+     * Downloads an object as ranges of <code>rangeSize</code> bytes fetched concurrently by
+     * <code>downloadThreads</code> workers, each written straight to its offset in the file. The remaining
+     * ranges are pinned with <code>If-Match</code> to the ETag of the first so that they all come from the same
+     * version of the object. Each range keeps track of the bytes it has written: one that fails with an I/O error
+     * or a server error is tried again up to <code>transferRetries</code> times, carrying on from its last byte,
+     * while the ranges already completed are left alone. The partial file is deleted only once a range has run
+     * out of retries, the object changed underneath the download, or the finished file fails the check against
+     * the ETag, which is skipped for manifests since their ETag is not the MD5 of their content.
+     * @param metaData the response headers of the first range
+     * @param firstRange the content of the first range, already requested by the caller
+     */
+    private void getRanged(@Nonnull final String bucket, @Nonnull final String location, @Nonnull File toFile, long length, @Nonnull Map<String,String> metaData, @Nonnull final InputStream firstRange, long rangeSize, int threads, @Nullable final FileTransfer transfer) throws CloudException, InternalException {
+        final CloudFilesMethod method = new CloudFilesMethod(provider);
+        final String etag = metaData.get("ETag");
+        final boolean manifest = metaData.containsKey("X-Object-Manifest");
+        final AtomicLong progress = new AtomicLong(0L);
+        final AtomicLong completed = new AtomicLong(0L);
+        RandomAccessFile file = null;
+        boolean complete = false;
+
+        if( transfer != null ) {
+            transfer.setBytesToTransfer(length);
+        }
+        try {
+            file = new RandomAccessFile(toFile, "rw");
+            file.setLength(length);
+
+            final FileChannel channel = file.getChannel();
+            WorkerPool pool = new WorkerPool(provider, "Rackspace Ranged Download", threads);
+
+            try {
+                for( long offset=0L; offset < length; offset += rangeSize ) {
+                    final long first = offset;
+                    final long last = Math.min(offset + rangeSize, length) - 1;
+
+                    if( pool.isFailed() ) {
+                        break;
+                    }
+                    pool.submit(new WorkerPool.Task() {
+                        private InputStream pending = (first == 0L ? firstRange : null);
+                        private long        position = first;
+
+                        public void execute() throws CloudException, InternalException {
+                            if( position > last ) {
+                                return;
+                            }
+                            InputStream input = pending;
+
+                            pending = null;
+                            if( input == null ) {
+                                input = method.get(bucket, location, position, last, manifest ? null : etag);
+                            }
+                            if( input == null ) {
+                                throw new CloudException("No such object: " + bucket + "/" + location);
+                            }
+                            try {
+                                ReadableByteChannel source = Channels.newChannel(input);
+                                ByteBuffer buffer = ByteBuffer.allocate(FileSegmentEntity.BUFFER_SIZE);
+
+                                while( position <= last ) {
+                                    buffer.clear();
+                                    if( last - position + 1 < buffer.capacity() ) {
+                                        buffer.limit((int)(last - position + 1));
+                                    }
+                                    if( source.read(buffer) < 0 ) {
+                                        throw new CloudException(new EOFException("Range of " + bucket + "/" + location + " ended early at " + position));
+                                    }
+                                    buffer.flip();
+                                    while( buffer.hasRemaining() ) {
+                                        int n = channel.write(buffer, position);
+
+                                        position += n;
+                                        long total = progress.addAndGet(n);
+
+                                        if( transfer != null ) {
+                                            transfer.setBytesTransferred(total);
+                                        }
+                                    }
+                                }
+                                completed.incrementAndGet();
+                            }
+                            catch( IOException e ) {
+                                throw new CloudException(e);
+                            }
+                            finally {
+                                try { input.close(); }
+                                catch( IOException ignore ) { }
+                            }
+                        }
+                    }, WorkerPool.TRANSFER, getTransferRetries());
+                }
+            }
+            finally {
+                pool.await();
+            }
+            if( !manifest && etag != null ) {
+                String digest = md5(channel, length);
+
+                if( !digest.equalsIgnoreCase(CloudFilesMethod.unquote(etag)) ) {
+                    throw new CloudException("MD5 hash values do not match for " + bucket + "/" + location + ", probably data corruption: " + etag + " != " + digest);
+                }
+            }
+            complete = true;
+        }
+        catch( IOException e ) {
+            throw new InternalException(e);
+        }
+        finally {
+            if( file != null ) {
+                try { file.close(); }
+                catch( IOException ignore ) { }
+            }
+            if( !complete ) {
+                Logger logger = RackspaceCloud.getLogger(CloudFiles.class, "std");
+                long ranges = (length + rangeSize - 1) / rangeSize;
+
+                logger.warn("Download of " + bucket + "/" + location + " failed with " + completed.get() + " of " + ranges + " ranges complete");
+                if( toFile.exists() && !toFile.delete() ) {
+                    logger.warn("Unable to delete partial download " + toFile);
+                }
+            }
+        }
+    }
+
     @Override
     public Storage<org.dasein.util.uom.storage.Byte> getMaxObjectSize() {
-        return MAX_OBJECT_SIZE;
+        // anything beyond MAX_OBJECT_SIZE is uploaded as segments behind a manifest
+        return MAX_LARGE_OBJECT_SIZE;
     }
 
     @Override
@@ -352,6 +595,24 @@ public class CloudFiles extends AbstractBlobStoreSupport {
         return getMetaDataLong("Content-Length", meta);
     }
 
+    /**
+     * @return the full length of the object from the <code>Content-Range</code> of a ranged GET, or -1 if unknown
+     */
+    private long getMetaDataRangeLength(@Nonnull Map<String,String> meta) {
+        String range = meta.get("Content-Range");
+        int idx = (range == null ? -1 : range.lastIndexOf('/'));
+
+        if( idx < 0 ) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(range.substring(idx+1).trim());
+        }
+        catch( NumberFormatException e ) {
+            return -1L;
+        }
+    }
+
     private long getMetaDataLong(@Nonnull String key, @Nonnull Map<String,String> meta) {
         if( !meta.containsKey(key) ) {
             return -1L;
@@ -361,7 +622,33 @@ public class CloudFiles extends AbstractBlobStoreSupport {
         return (val == null ? -1L : Long.parseLong(val));
     }
 
-    @SuppressWarnings("UnusedDeclaration")
+    /**
+     * @return the time the container or object was last written, from <code>X-Timestamp</code> or <code>Last-Modified</code>, or -1 if unknown
+     */
+    private long getMetaDataTimestamp(@Nonnull Map<String,String> meta) {
+        String timestamp = meta.get("X-Timestamp");
+
+        if( timestamp != null ) {
+            try {
+                return (long)(Double.parseDouble(timestamp) * 1000.0);
+            }
+            catch( NumberFormatException ignore ) {
+                // fall back to Last-Modified
+            }
+        }
+        String lastModified = meta.get("Last-Modified");
+
+        if( lastModified != null ) {
+            try {
+                return DateUtils.parseDate(lastModified).getTime();
+            }
+            catch( DateParseException ignore ) {
+                // unknown
+            }
+        }
+        return -1L;
+    }
+
     private @Nonnull String getMetaDataString(@Nonnull String key, @Nonnull Map<String,String> meta, @Nonnull String def) {
         if( meta.containsKey(key) ) {
             return def;
@@ -374,6 +661,31 @@ public class CloudFiles extends AbstractBlobStoreSupport {
         return val;
     }
 
+    static private @Nonnull String md5(@Nonnull FileChannel channel, long length) throws IOException, InternalException {
+        MessageDigest md5;
+
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        }
+        catch( NoSuchAlgorithmException e ) {
+            throw new InternalException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+        long position = 0L;
+
+        while( position < length ) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+
+            if( n < 0 ) {
+                break;
+            }
+            md5.update(buffer.array(), 0, n);
+            position += n;
+        }
+        return FileSegmentEntity.toHex(md5.digest());
+    }
+
     @Override
     public @Nonnull String getProviderTermForBucket(@Nonnull Locale locale) {
         return "bucket";
@@ -441,20 +753,7 @@ public class CloudFiles extends AbstractBlobStoreSupport {
             logger.trace("enter - " + CloudFiles.class.getName() + ".loadBuckets(" + regionId + "," + iterator + ")");
         }
         try {
-            CloudFilesMethod method = new CloudFilesMethod(provider);
-            Collection<String> containers;
-
-            try {
-                containers = method.get(null);
-            }
-            catch( RuntimeException e ) {
-                logger.error("Could not load buckets: " + e.getMessage());
-                e.printStackTrace();
-                throw new CloudException(e);
-            }
-            for( String container : containers ) {
-                iterator.push(Blob.getInstance(regionId, "/" + container, container, -1L));
-            }
+            stream(regionId, null, iterator);
         }
         finally {
             if( logger.isTraceEnabled() ) {
@@ -470,35 +769,112 @@ public class CloudFiles extends AbstractBlobStoreSupport {
             logger.trace("enter - " + CloudFiles.class.getName() + ".loadFiles(" + bucketName + "," + iterator + ")");
         }
         try {
-            CloudFilesMethod method = new CloudFilesMethod(provider);
-            Collection<String> files;
+            stream(regionId, bucketName, iterator);
+        }
+        finally {
+            if( logger.isTraceEnabled() ) {
+                logger.trace("exit - " + CloudFiles.class.getName() + ".loadFiles()");
+            }
+        }
+    }
+
+    static private final SimpleDateFormat LAST_MODIFIED = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+
+    static {
+        LAST_MODIFIED.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * Parses the UTC timestamp of a JSON listing entry, which Swift reports to the microsecond without a zone.
+     * @param timestamp the <code>last_modified</code> value, e.g. <code>2012-08-21T17:04:12.371890</code>
+     * @return the timestamp in milliseconds, or -1 if it cannot be parsed
+     */
+    static long parseLastModified(@Nullable String timestamp) {
+        if( timestamp == null || timestamp.length() < 19 ) {
+            return -1L;
+        }
+        long millis;
+
+        try {
+            synchronized( LAST_MODIFIED ) {
+                millis = LAST_MODIFIED.parse(timestamp.substring(0, 19)).getTime();
+            }
+        }
+        catch( ParseException e ) {
+            return -1L;
+        }
+        if( timestamp.length() > 20 && timestamp.charAt(19) == '.' ) {
+            String fraction = (timestamp.substring(20) + "00").substring(0, 3);
 
             try {
-                if( bucketName == null ) {
-                    files = method.get(null);
-                }
-                else {
-                    files = method.get(bucketName);
-                }
+                millis += Integer.parseInt(fraction);
             }
-            catch( RuntimeException e ) {
-                logger.error("Could not list files in " + bucketName + ": " + e.getMessage());
-                e.printStackTrace();
-                throw new CloudException(e);
+            catch( NumberFormatException ignore ) {
+                // ignore the fraction
             }
-            for( String info : files ) {
-                Map<String,String> metaData = method.head(bucketName, info);
+        }
+        return millis;
+    }
 
-                iterator.push(Blob.getInstance(regionId, "/" + bucketName + "/" + info, bucketName, info, -1L, new Storage<Byte>(getMetaDataLength(metaData), Storage.BYTE)));
-            }
+    /**
+     * Pushes the listing of the account (for a null bucket) or of a container into the iterator one page at a time.
+     * The request for the next page is already in flight while the current one is handed to the consumer, and no
+     * more than two pages are held at once.
+     */
+    private void stream(@Nonnull String regionId, @Nullable String bucketName, @Nonnull Jiterator<Blob> iterator) throws CloudException, InternalException {
+        Logger logger = RackspaceCloud.getLogger(CloudFiles.class, "std");
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+        JSONArray page;
+
+        try {
+            page = method.list(bucketName, null);
         }
-        finally {
-            if( logger.isTraceEnabled() ) {
-                logger.trace("exit - " + CloudFiles.class.getName() + ".loadFiles()");
+        catch( RuntimeException e ) {
+            logger.error("Could not list files in " + bucketName + ": " + e.getMessage());
+            e.printStackTrace();
+            throw new CloudException(e);
+        }
+        while( page != null && page.length() > 0 ) {
+            Future<JSONArray> next = null;
+
+            try {
+                if( page.length() >= CloudFilesMethod.LIST_LIMIT ) {
+                    String marker = page.getJSONObject(page.length()-1).getString("name");
+
+                    next = method.listAsync(bucketName, marker, null, null, null, CloudFilesMethod.LIST_LIMIT);
+                }
+                for( int i=0; i<page.length(); i++ ) {
+                    JSONObject item = page.getJSONObject(i);
+
+                    if( bucketName == null ) {
+                        String name = item.getString("name");
+
+                        iterator.push(Blob.getInstance(regionId, "/" + name, name, -1L));
+                    }
+                    else {
+                        iterator.push(toBlob(regionId, bucketName, item));
+                    }
+                }
+            }
+            catch( JSONException e ) {
+                if( next != null ) {
+                    next.cancel(true);
+                }
+                logger.error("Invalid listing for " + bucketName + ": " + e.getMessage());
+                throw new CloudException(e);
             }
+            page = (next == null ? null : CloudFilesMethod.getResult(next));
         }
     }
 
+    private @Nonnull Blob toBlob(@Nonnull String regionId, @Nonnull String bucketName, @Nonnull JSONObject item) throws JSONException {
+        String name = item.getString("name");
+        long size = item.optLong("bytes", 0L);
+        long lastModified = parseLastModified(item.optString("last_modified", null));
+
+        return Blob.getInstance(regionId, "/" + bucketName + "/" + name, bucketName, name, lastModified, new Storage<Byte>(size, Storage.BYTE));
+    }
+
     @Override
     public void makePublic(@Nonnull String bucket) throws InternalException, CloudException {
         throw new OperationNotSupportedException("Swift does not support bucket sharing");
@@ -525,8 +901,13 @@ public class CloudFiles extends AbstractBlobStoreSupport {
         if( object == null ) {
             throw new CloudException("No source object was specified");
         }
-        copy(sourceBucket, object, targetBucket, object);
-        removeObject(sourceBucket, object);
+        if( sourceBucket.equals(targetBucket) ) {
+            return;
+        }
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+
+        method.copy(sourceBucket, object, targetBucket, object);
+        method.delete(sourceBucket, object);
     }
 
     @Override
@@ -540,20 +921,192 @@ public class CloudFiles extends AbstractBlobStoreSupport {
             if( bucket == null ) {
                 throw new OperationNotSupportedException("A bucket must be specified for Swift");
             }
-            CloudFilesMethod method = new CloudFilesMethod(provider);
+            putFile(bucket, object, file, null);
+        }
+        finally {
+            if( logger.isTraceEnabled() ) {
+                logger.trace("exit - " + CloudFiles.class.getName() + ".put()");
+            }
+        }
+    }
 
-            try {
-                method.put(bucket, object, null, new FileInputStream(file));
+    /**
+     * Uploads a file whole or in segments, then deletes the segments of any manifest it replaced. Only segmented
+     * uploads ask the cloud whether the object was a manifest; a single-request upload goes by the metadata this
+     * client already holds for the object unless <code>checkManifests=true</code> asks for the lookup every time.
+     */
+    private void putFile(@Nonnull String bucket, @Nonnull String object, @Nonnull File file, @Nullable FileTransfer transfer) throws CloudException, InternalException {
+        ProviderContext ctx = provider.getContext();
+        Properties p = (ctx == null ? null : ctx.getCustomProperties());
+        boolean segmented = (file.length() > getSegmentSize());
+        String previous = getSegments(bucket, object, segmented || (p != null && "true".equalsIgnoreCase(p.getProperty("checkManifests"))));
+        String segments = null;
+
+        if( segmented ) {
+            segments = putSegmented(bucket, object, file, transfer);
+        }
+        else {
+            putWhole(bucket, object, file, transfer);
+        }
+        if( previous != null && !previous.equals(segments) ) {
+            removeSegments(previous);
+        }
+    }
+
+    /**
+     * Uploads a file in a single request with an exact <code>Content-Length</code>, reading it once through
+     * a file channel while computing the MD5 that the returned ETag is checked against.
+     */
+    private void putWhole(@Nonnull String bucket, @Nonnull String object, @Nonnull File file, @Nullable final FileTransfer transfer) throws CloudException, InternalException {
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+        final AtomicLong progress = new AtomicLong(0L);
+
+        if( transfer != null ) {
+            transfer.setBytesToTransfer(file.length());
+        }
+        method.put(bucket, object, new FileSegmentEntity(file, 0L, file.length()) {
+            @Override
+            protected void transferred(long bytes) {
+                long total = progress.addAndGet(bytes);
+
+                if( transfer != null ) {
+                    transfer.setBytesTransferred(total);
+                }
             }
-            catch( IOException e ) {
-                throw new InternalException(e);
+        });
+    }
+
+    /**
+     * Uploads a large file as a set of segments in the <code>&lt;bucket&gt;_segments</code> container, sent
+     * concurrently by <code>segmentThreads</code> workers, and then publishes a manifest under the object name
+     * that joins them. Each segment is checked against the MD5 of the bytes sent and, if it fails with an I/O
+     * error, a checksum mismatch or a server error, sent again on its own up to <code>transferRetries</code> times. Segments are <code>segmentSize</code> bytes, up to {@link #MAX_OBJECT_SIZE}.
+     * @param transfer optional progress tracking, updated as bytes are written across all segments
+     * @return the <code>container/prefix</code> the manifest points to
+     */
+    private @Nonnull String putSegmented(@Nonnull String bucket, @Nonnull String object, @Nonnull File file, @Nullable final FileTransfer transfer) throws CloudException, InternalException {
+        ProviderContext ctx = provider.getContext();
+        int threads = (int)RackspaceCloud.getLongProperty(ctx == null ? null : ctx.getCustomProperties(), "segmentThreads", DEFAULT_SEGMENT_THREADS);
+        final CloudFilesMethod method = new CloudFilesMethod(provider);
+        final String container = bucket + SEGMENT_CONTAINER_SUFFIX;
+        // a fresh prefix per upload keeps segments of an earlier upload of the same object out of the manifest
+        String prefix = object + "/" + System.currentTimeMillis() + "/";
+        final AtomicLong progress = new AtomicLong(0L);
+        long segmentSize = getSegmentSize();
+        long length = file.length();
+
+        if( transfer != null ) {
+            transfer.setBytesToTransfer(length);
+        }
+        method.put(container);
+
+        WorkerPool pool = new WorkerPool(provider, "Rackspace Segment Upload", threads);
+
+        try {
+            for( long offset=0L, i=0L; offset < length; offset += segmentSize, i++ ) {
+                final String name = prefix + String.format("%08d", i);
+                final AtomicLong sent = new AtomicLong(0L);
+                final FileSegmentEntity segment = new FileSegmentEntity(file, offset, Math.min(segmentSize, length - offset)) {
+                    @Override
+                    protected void transferred(long bytes) {
+                        long total = progress.addAndGet(bytes);
+
+                        sent.addAndGet(bytes);
+                        if( transfer != null ) {
+                            transfer.setBytesTransferred(total);
+                        }
+                    }
+                };
+
+                if( pool.isFailed() ) {
+                    break;
+                }
+                pool.submit(new WorkerPool.Task() {
+                    public void execute() throws CloudException, InternalException {
+                        // a retried segment is sent again in full, so take back what the failed attempt counted
+                        progress.addAndGet(-sent.getAndSet(0L));
+                        method.put(container, name, segment);
+                    }
+                }, WorkerPool.TRANSFER, getTransferRetries());
             }
         }
         finally {
-            if( logger.isTraceEnabled() ) {
-                logger.trace("exit - " + CloudFiles.class.getName() + ".put()");
+            pool.await();
+        }
+        method.putManifest(bucket, object, container + "/" + prefix);
+        return container + "/" + prefix;
+    }
+
+    /**
+     * Looks up the segments behind an existing manifest so they can be deleted once the object is replaced or
+     * removed. Only manifests pointing at the segments this class writes for the object are accepted, so segments
+     * that another manifest may share are never touched.
+     * @param lookup true to ask the cloud, false to go only by metadata already in the {@link ObjectMetadataCache}
+     * @return the <code>container/prefix</code> of the segments, or null if the object is not known to be a manifest written here
+     */
+    private @Nullable String getSegments(@Nonnull String bucket, @Nonnull String object, boolean lookup) throws CloudException, InternalException {
+        Map<String,String> metaData;
+
+        if( lookup ) {
+            metaData = new CloudFilesMethod(provider).head(bucket, object);
+        }
+        else {
+            ObjectMetadataCache.Entry entry = provider.getObjectMetadataCache().get(bucket, object);
+
+            metaData = (entry == null ? null : entry.getMetaData());
+        }
+        String segments = (metaData == null ? null : metaData.get("X-Object-Manifest"));
+
+        if( segments == null || !segments.startsWith(bucket + SEGMENT_CONTAINER_SUFFIX + "/" + object + "/") ) {
+            return null;
+        }
+        return segments;
+    }
+
+    /**
+     * Deletes the segments under a <code>container/prefix</code> left behind by a replaced or removed manifest.
+     * The object itself has already been written or deleted at this point, so failures are logged rather than thrown.
+     */
+    private void removeSegments(@Nonnull String segments) {
+        Logger logger = RackspaceCloud.getLogger(CloudFiles.class, "std");
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+        int idx = segments.indexOf('/');
+        String container = segments.substring(0, idx);
+        String prefix = segments.substring(idx+1);
+        BulkDeleteResult result = new BulkDeleteResult();
+        String marker = null;
+
+        try {
+            while( true ) {
+                JSONArray page = method.list(container, marker, null, prefix, null, CloudFilesMethod.LIST_LIMIT);
+
+                if( page == null || page.length() < 1 ) {
+                    break;
+                }
+                ArrayList<String> paths = new ArrayList<String>();
+
+                for( int i=0; i<page.length(); i++ ) {
+                    marker = page.getJSONObject(i).getString("name");
+                    paths.add(container + "/" + marker);
+                }
+                remove(paths, result);
+                if( page.length() < CloudFilesMethod.LIST_LIMIT ) {
+                    break;
+                }
+            }
+            if( !result.isSuccessful() ) {
+                logger.warn("Unable to remove every segment under " + segments + ": " + result);
             }
         }
+        catch( CloudException e ) {
+            logger.warn("Unable to remove the segments under " + segments + ": " + e.getMessage());
+        }
+        catch( InternalException e ) {
+            logger.warn("Unable to remove the segments under " + segments + ": " + e.getMessage());
+        }
+        catch( JSONException e ) {
+            logger.warn("Unable to remove the segments under " + segments + ": " + e.getMessage());
+        }
     }
 
     @Override
@@ -564,33 +1117,161 @@ public class CloudFiles extends AbstractBlobStoreSupport {
             logger.trace("enter - " + CloudFiles.class.getName() + ".put(" + bucket + "," + object + "," + content + ")");
         }
         try {
+            if( bucket == null ) {
+                throw new OperationNotSupportedException("A bucket must be specified for Swift");
+            }
+            CloudFilesMethod method = new CloudFilesMethod(provider);
+
             try {
-                File tmp = File.createTempFile(object, ".txt");
-                PrintWriter writer;
+                method.put(bucket, object, content.getBytes("utf-8"), "text/plain; charset=utf-8");
+            }
+            catch( UnsupportedEncodingException e ) {
+                throw new InternalException(e);
+            }
+        }
+        finally {
+            if( logger.isTraceEnabled() ) {
+                logger.trace("exit - " + CloudFiles.class.getName() + ".put()");
+            }
+        }
+    }
+
+    /**
+     * Deletes every object in the bucket and then, if all of them went away, the bucket itself.
+     * @return the outcome for the objects in the bucket
+     */
+    public @Nonnull BulkDeleteResult emptyAndRemoveBucket(@Nonnull String bucket) throws CloudException, InternalException {
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+        BulkDeleteResult result = new BulkDeleteResult();
+        String marker = null;
+
+        while( true ) {
+            JSONArray page = method.list(bucket, marker);
+
+            if( page == null ) {
+                return result;
+            }
+            ArrayList<String> paths = new ArrayList<String>();
+
+            try {
+                for( int i=0; i<page.length(); i++ ) {
+                    marker = page.getJSONObject(i).getString("name");
+                    paths.add(bucket + "/" + marker);
+                }
+            }
+            catch( JSONException e ) {
+                throw new CloudException(e);
+            }
+            remove(paths, result);
+            if( page.length() < CloudFilesMethod.LIST_LIMIT ) {
+                break;
+            }
+        }
+        if( result.isSuccessful() ) {
+            removeBucket(bucket);
+        }
+        return result;
+    }
+
+    private boolean isBulkDeleteEnabled() {
+        ProviderContext ctx = provider.getContext();
+        Properties p = (ctx == null ? null : ctx.getCustomProperties());
+        Boolean supported = bulkDelete;
+
+        if( p != null && "false".equalsIgnoreCase(p.getProperty("bulkDelete")) ) {
+            return false;
+        }
+        return (supported == null || supported);
+    }
+
+    private void remove(@Nonnull List<String> paths, @Nonnull BulkDeleteResult result) throws CloudException, InternalException {
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+
+        for( int i=0; i<paths.size(); i += CloudFilesMethod.BULK_DELETE_LIMIT ) {
+            List<String> chunk = paths.subList(i, Math.min(paths.size(), i + CloudFilesMethod.BULK_DELETE_LIMIT));
+
+            if( isBulkDeleteEnabled() ) {
+                JSONObject summary;
 
                 try {
-                    writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp)));
-                    writer.print(content);
-                    writer.flush();
-                    writer.close();
-                    put(bucket, object, tmp);
+                    summary = method.bulkDelete(chunk);
                 }
-                finally {
-                    if( !tmp.delete() ) {
-                        logger.warn("Unable to delete temp file: " + tmp);
+                catch( CloudException e ) {
+                    if( e.getHttpCode() != 404 && e.getHttpCode() != 501 ) {
+                        throw e;
+                    }
+                    RackspaceCloud.getLogger(CloudFiles.class, "std").info("Bulk delete is not supported by this account (" + e.getHttpCode() + "), deleting individually from now on");
+                    bulkDelete = false;
+                    summary = null;
+                }
+                // any other answer without a summary may be a one-off, so it only sends this chunk through individual deletes
+                if( summary != null ) {
+                    bulkDelete = true;
+                    try {
+                        String status = summary.optString("Response Status", "200 OK");
+                        JSONArray errors = summary.optJSONArray("Errors");
+
+                        if( status.startsWith("2") || (errors != null && errors.length() > 0) ) {
+                            result.addDeleted(summary.optInt("Number Deleted", 0));
+                            result.addNotFound(summary.optInt("Number Not Found", 0));
+                            for( int j=0; errors != null && j<errors.length(); j++ ) {
+                                JSONArray error = errors.getJSONArray(j);
+                                String path = URLDecoder.decode(error.getString(0), "utf-8");
+
+                                result.addError(path.startsWith("/") ? path.substring(1) : path, error.optString(1, status));
+                            }
+                            continue;
+                        }
+                        // the request as a whole failed without saying which objects, so go through them one by one
+                        RackspaceCloud.getLogger(CloudFiles.class, "std").warn("Bulk delete failed with " + status + ", deleting individually");
+                    }
+                    catch( JSONException e ) {
+                        throw new CloudException(e);
+                    }
+                    catch( UnsupportedEncodingException e ) {
+                        throw new InternalException(e);
                     }
                 }
             }
-            catch( IOException e ) {
-                logger.error("Failed to write file: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
+            removeEach(chunk, result);
+        }
+    }
+
+    private void removeEach(@Nonnull List<String> paths, @Nonnull final BulkDeleteResult result) throws CloudException, InternalException {
+        ProviderContext ctx = provider.getContext();
+        int threads = (int)RackspaceCloud.getLongProperty(ctx == null ? null : ctx.getCustomProperties(), "deleteThreads", DEFAULT_DELETE_THREADS);
+        final CloudFilesMethod method = new CloudFilesMethod(provider);
+        WorkerPool pool = new WorkerPool(provider, "Rackspace Delete", threads);
+
+        try {
+            for( final String path : paths ) {
+                final int idx = path.indexOf('/');
+
+                pool.submit(new WorkerPool.Task() {
+                    public void execute() {
+                        // the DELETE already retried any throttling, so whatever still fails is reported for
+                        // this object alone and the task never fails or goes back to the pool
+                        try {
+                            method.delete(path.substring(0, idx), path.substring(idx+1));
+                            result.addDeleted(1);
+                        }
+                        catch( CloudException e ) {
+                            if( e.getHttpCode() == 404 ) {
+                                result.addNotFound(1);
+                            }
+                            else {
+                                result.addError(path, String.valueOf(e.getMessage()));
+                            }
+                        }
+                        catch( InternalException e ) {
+                            result.addError(path, String.valueOf(e.getMessage()));
+                        }
+                    }
+                });
             }
         }
         finally {
-            if( logger.isTraceEnabled() ) {
-                logger.trace("exit - " + CloudFiles.class.getName() + ".put()");
-            }
+            pool.await();
         }
     }
 
@@ -625,8 +1306,12 @@ public class CloudFiles extends AbstractBlobStoreSupport {
                 throw new OperationNotSupportedException("Swift does not support root objects");
             }
             CloudFilesMethod method = new CloudFilesMethod(provider);
+            String segments = getSegments(bucket, name, true);
 
             method.delete(bucket, name);
+            if( segments != null ) {
+                removeSegments(segments);
+            }
         }
         finally {
             if( logger.isTraceEnabled() ) {
@@ -635,38 +1320,37 @@ public class CloudFiles extends AbstractBlobStoreSupport {
         }
     }
 
+    /**
+     * Deletes many objects from a bucket, through a single bulk delete request per {@link CloudFilesMethod#BULK_DELETE_LIMIT}
+     * objects where the account supports it, and otherwise through <code>deleteThreads</code> concurrent DELETE requests.
+     * Bulk deletes may be turned off with the <code>bulkDelete</code> custom property. Unlike {@link #removeObject(String, String)},
+     * this does not look up manifests, so the segments behind any manifest in the list are left in place.
+     * @return the outcome for each object
+     */
+    public @Nonnull BulkDeleteResult removeObjects(@Nonnull String bucket, @Nonnull Collection<String> objects) throws CloudException, InternalException {
+        BulkDeleteResult result = new BulkDeleteResult();
+        ArrayList<String> paths = new ArrayList<String>();
+
+        for( String object : objects ) {
+            paths.add(bucket + "/" + object);
+        }
+        remove(paths, result);
+        return result;
+    }
+
     @Override
     public @Nonnull String renameBucket(@Nonnull String oldName, @Nonnull String newName, boolean findFreeName) throws CloudException, InternalException {
         Blob bucket = createBucket(newName, findFreeName);
+        String target = bucket.getBucketName();
 
-        for( Blob file : list(oldName) ) {
-            int retries = 10;
+        moveAll(oldName, target == null ? newName : target);
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+        JSONArray remaining = method.list(oldName, null, null, null, null, 1);
 
-            while( true ) {
-                retries--;
-                try {
-                    move(oldName, file.getObjectName(), bucket.getBucketName());
-                    break;
-                }
-                catch( CloudException e ) {
-                    if( retries < 1 ) {
-                        throw e;
-                    }
-                }
-                try { Thread.sleep(retries * 10000L); }
-                catch( InterruptedException ignore ) { }
-            }
-        }
-        boolean ok = true;
-        for( Blob file : list(oldName ) ) {
-            if( file != null ) {
-                ok = false;
-            }
-        }
-        if( ok ) {
+        if( remaining != null && remaining.length() < 1 ) {
             removeBucket(oldName);
         }
-        return newName;
+        return (target == null ? newName : target);
     }
 
     @Override
@@ -674,19 +1358,64 @@ public class CloudFiles extends AbstractBlobStoreSupport {
         if( bucket == null ) {
             throw new CloudException("No bucket was specified");
         }
-        copy(bucket, object, bucket, newName);
-        removeObject(bucket, object);
+        if( object.equals(newName) ) {
+            return;
+        }
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+
+        method.copy(bucket, object, bucket, newName);
+        method.delete(bucket, object);
+    }
+
+    /**
+     * Moves every object from one bucket to another using server-side copies spread over a bounded pool of
+     * <code>copyThreads</code> workers. A move that fails with a transient error is tried again up to
+     * <code>transferRetries</code> times.
+     */
+    private void moveAll(@Nonnull final String sourceBucket, @Nonnull final String targetBucket) throws CloudException, InternalException {
+        ProviderContext ctx = provider.getContext();
+        int threads = (int)RackspaceCloud.getLongProperty(ctx == null ? null : ctx.getCustomProperties(), "copyThreads", DEFAULT_COPY_THREADS);
+        WorkerPool pool = new WorkerPool(provider, "Rackspace Copy", threads);
+
+        try {
+            for( Blob file : list(sourceBucket) ) {
+                final String object = file.getObjectName();
+
+                if( pool.isFailed() ) {
+                    break;
+                }
+                if( object == null ) {
+                    continue;
+                }
+                pool.submit(new WorkerPool.Task() {
+                    public void execute() throws CloudException, InternalException {
+                        move(sourceBucket, object, targetBucket);
+                    }
+                }, WorkerPool.TRANSFER, getTransferRetries());
+            }
+        }
+        finally {
+            pool.await();
+        }
     }
 
     @Override
     public @Nonnull Blob upload(@Nonnull File source, @Nullable String bucket, @Nonnull String fileName) throws CloudException, InternalException {
+        return upload(source, bucket, fileName, null);
+    }
+
+    /**
+     * Uploads a file, reporting progress through the specified transfer. Files larger than one segment are
+     * uploaded as parallel segments behind a manifest.
+     */
+    public @Nonnull Blob upload(@Nonnull File source, @Nullable String bucket, @Nonnull String fileName, @Nullable FileTransfer transfer) throws CloudException, InternalException {
         if( bucket == null ) {
             throw new CloudException("No bucket was specified for this request");
         }
         if( !exists(bucket) ) {
             createBucket(bucket, false);
         }
-        put(bucket, fileName, source);
+        putFile(bucket, fileName, source, transfer);
         return getObject(bucket, fileName);
     }
 
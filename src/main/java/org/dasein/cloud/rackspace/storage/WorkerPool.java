@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.storage;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.rackspace.RackspaceCloud;
+import org.dasein.cloud.rackspace.RetryPolicy;
+import org.dasein.util.NamedThreadFactory;
+
+/**
+ * Bounded pool of workers for fanning out many independent storage requests. Each task is submitted with its own
+ * {@link RetryCondition} and retry budget; a task that fails with a retryable error is rescheduled with the provider's
+ * backoff instead of holding a worker while it waits. Any other failure, or a task running out of retries, fails the
+ * whole batch.
+ */
+class WorkerPool {
+    /**
+     * Decides whether a task that failed with the specified error is worth running again.
+     */
+    interface RetryCondition {
+        public boolean isRetryable(@Nonnull Exception e);
+    }
+
+    /**
+     * A unit of work that may safely be run again after it fails with a retryable error.
+     */
+    interface Task {
+        public void execute() throws CloudException, InternalException;
+    }
+
+    /**
+     * Retries the failures worth another attempt when moving data: I/O errors and responses cut short, a body
+     * refused or answered with a checksum that does not match (422), timeouts, throttling and server errors.
+     */
+    static final RetryCondition TRANSFER = new RetryCondition() {
+        public boolean isRetryable(@Nonnull Exception e) {
+            if( e instanceof CloudException ) {
+                int code = ((CloudException)e).getHttpCode();
+
+                if( code == 0 ) {
+                    return (e.getCause() instanceof IOException);
+                }
+                return (code == 408 || code == 413 || code == 422 || code == 429 || code >= 500);
+            }
+            return (e instanceof InternalException && e.getCause() instanceof IOException);
+        }
+    };
+
+    private AtomicReference<Exception>  failure = new AtomicReference<Exception>();
+    private Semaphore                   pending;
+    private int                         permits;
+    private RetryPolicy                 policy;
+    private ScheduledThreadPoolExecutor pool;
+
+    /**
+     * @param provider the provider whose retry policy governs the backoff
+     * @param name the name given to the worker threads
+     * @param threads the number of workers
+     */
+    WorkerPool(@Nonnull RackspaceCloud provider, @Nonnull String name, @Nonnegative int threads) throws CloudException {
+        policy = provider.getRetryPolicy();
+        pool = new ScheduledThreadPoolExecutor(Math.max(1, threads), new NamedThreadFactory(CloudFiles.class, name));
+        // every queued or scheduled task holds a permit, which bounds the work waiting for a worker
+        permits = Math.max(1, threads) * 4;
+        pending = new Semaphore(permits);
+    }
+
+    /**
+     * Waits for every submitted task to finish, then shuts the workers down.
+     * @throws CloudException the first cloud error a task failed with for good
+     * @throws InternalException the first internal error a task failed with, or an interruption while waiting
+     */
+    void await() throws CloudException, InternalException {
+        try {
+            // tasks cancelled by an earlier shutdown never hand back their permits
+            if( !pool.isShutdown() ) {
+                pending.acquire(permits);
+                pending.release(permits);
+            }
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        Exception e = failure.get();
+
+        if( e instanceof CloudException ) {
+            throw (CloudException)e;
+        }
+        else if( e instanceof InternalException ) {
+            throw (InternalException)e;
+        }
+        else if( e != null ) {
+            throw new InternalException(e);
+        }
+    }
+
+    /**
+     * @return true once any task has failed for good
+     */
+    boolean isFailed() {
+        return (failure.get() != null);
+    }
+
+    /**
+     * Queues the specified task, retried only when the cloud is throttling or unavailable, as judged by the
+     * provider's retry policy. Requests already retry those statuses themselves, so this is the last resort.
+     */
+    void submit(@Nonnull Task task) throws InternalException {
+        submit(task, new RetryCondition() {
+            public boolean isRetryable(@Nonnull Exception e) {
+                return (e instanceof CloudException && policy.isRetryable(((CloudException)e).getHttpCode()));
+            }
+        }, policy.getMaxRetries());
+    }
+
+    /**
+     * Queues the specified task, blocking while too many tasks are already waiting for a worker.
+     * @param condition the failures worth running the task again for
+     * @param maxRetries the number of times the task may be run again
+     */
+    void submit(@Nonnull final Task task, @Nonnull final RetryCondition condition, @Nonnegative final int maxRetries) throws InternalException {
+        try {
+            pending.acquire();
+        }
+        catch( InterruptedException e ) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        pool.execute(new Runnable() {
+            private int attempt = 0;
+
+            public void run() {
+                try {
+                    task.execute();
+                    pending.release();
+                }
+                catch( Exception e ) {
+                    if( condition.isRetryable(e) && attempt < maxRetries && failure.get() == null && !pool.isShutdown() ) {
+                        long delay = policy.getBackoff(attempt++);
+
+                        RackspaceCloud.getLogger(WorkerPool.class, "std").warn("Retrying failed task in " + delay + "ms: " + e.getMessage());
+                        policy.retried();
+                        pool.schedule(this, delay, TimeUnit.MILLISECONDS);
+                    }
+                    else {
+                        failure.compareAndSet(null, e);
+                        pending.release();
+                    }
+                }
+            }
+        });
+    }
+}
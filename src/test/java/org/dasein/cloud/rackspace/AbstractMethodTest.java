@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.rackspace.standin.RackspaceStandIn;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Exercises authentication and retry handling in {@link AbstractMethod} against the in-memory stand-in.
+ */
+public class AbstractMethodTest {
+    /**
+     * Connects a provider to the specified stand-in, authenticating with throwaway credentials.
+     */
+    static public @Nonnull RackspaceCloud connect(@Nonnull RackspaceStandIn standIn, @Nonnull Properties properties) throws Exception {
+        ProviderContext ctx = new ProviderContext();
+        RackspaceCloud provider = new RackspaceCloud();
+
+        ctx.setEndpoint(standIn.getEndpoint());
+        ctx.setAccountNumber(standIn.getAccountNumber());
+        ctx.setRegionId("DFW");
+        ctx.setAccessPublic("user".getBytes("utf-8"));
+        ctx.setAccessPrivate("key".getBytes("utf-8"));
+        ctx.setCustomProperties(properties);
+        provider.connect(ctx);
+        return provider;
+    }
+
+    /**
+     * @return properties for a provider whose requests a test can count exactly
+     */
+    static public @Nonnull Properties getProperties() {
+        Properties properties = new Properties();
+
+        // the limiter fetches /limits in the background, which would add to the requests a test counts or fails
+        properties.setProperty("rateLimit", "false");
+        return properties;
+    }
+
+    private RackspaceCloud   provider;
+    private RackspaceStandIn standIn;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = new RackspaceStandIn(0);
+        standIn.start();
+        provider = connect(standIn, getProperties());
+    }
+
+    @After
+    public void tearDown() {
+        provider.close();
+        standIn.stop();
+    }
+
+    @Test
+    public void reauthenticatesAfterTokenExpiry() throws Exception {
+        RackspaceMethod method = new RackspaceMethod(provider);
+        String token = provider.getAuthenticationContext().getAuthToken();
+
+        assertNotNull(method.getServers("/servers", null));
+        standIn.expireTokens();
+
+        JSONObject servers = method.getServers("/servers", null);
+
+        assertNotNull(servers);
+        assertTrue(servers.has("servers"));
+        assertFalse(token.equals(provider.getAuthenticationContext().getAuthToken()));
+    }
+
+    @Test
+    public void reauthenticatesStorageAfterTokenExpiry() throws Exception {
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+
+        method.put("reauth");
+        standIn.expireTokens();
+        method.put("reauth", "object", "content".getBytes("utf-8"), "text/plain");
+
+        JSONArray objects = method.list("reauth", null);
+
+        assertNotNull(objects);
+        assertEquals(1, objects.length());
+    }
+
+    @Test
+    public void keepsStoredObjectWhenUploadIsDamaged() throws Exception {
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+        File file = File.createTempFile("upload", ".dat");
+        byte[] content = new byte[100000];
+
+        try {
+            for( int i=0; i<content.length; i++ ) {
+                content[i] = (byte)i;
+            }
+            FileOutputStream output = new FileOutputStream(file);
+
+            try {
+                output.write(content);
+            }
+            finally {
+                output.close();
+            }
+            method.put("uploads");
+            method.put("uploads", "object", new FileSegmentEntity(file, 0L, file.length()));
+            try {
+                method.put("uploads", "object", new FileSegmentEntity(file, 0L, file.length()) {
+                    @Override
+                    public void writeTo(@Nonnull OutputStream output) throws IOException {
+                        // flips one bit on the way out, as a faulty network path might
+                        super.writeTo(new FilterOutputStream(output) {
+                            private boolean damaged = false;
+
+                            @Override
+                            public void write(@Nonnull byte[] buffer, int off, int len) throws IOException {
+                                if( !damaged && len > 0 ) {
+                                    buffer = buffer.clone();
+                                    buffer[off] ^= 1;
+                                    damaged = true;
+                                }
+                                out.write(buffer, off, len);
+                            }
+                        });
+                    }
+                });
+                fail("The damaged upload was accepted");
+            }
+            catch( CloudException expected ) {
+                assertEquals(422, expected.getHttpCode());
+            }
+            InputStream input = method.get("uploads", "object");
+            ByteArrayOutputStream stored = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+
+            assertNotNull(input);
+            try {
+                while( (n = input.read(buffer)) > -1 ) {
+                    stored.write(buffer, 0, n);
+                }
+            }
+            finally {
+                input.close();
+            }
+            assertArrayEquals(content, stored.toByteArray());
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void retriesOverLimitAfterRetryAfter() throws Exception {
+        assertRetried(413);
+    }
+
+    @Test
+    public void retriesServiceUnavailableAfterRetryAfter() throws Exception {
+        assertRetried(503);
+    }
+
+    @Test
+    public void streamsUnchangedListingsFromResponseCache() throws Exception {
+        Properties properties = getProperties();
+
+        properties.setProperty("responseCache", "true");
+        provider.close();
+        provider = connect(standIn, properties);
+
+        RackspaceMethod method = new RackspaceMethod(provider);
+        ResponseCache cache = provider.getResponseCache();
+        int first = count(method.streamServers("/images", "images"));
+
+        assertTrue(first > 0);
+        assertEquals(0L, cache.getHitCount());
+        assertEquals(first, count(method.streamServers("/images", "images")));
+        assertEquals(1L, cache.getHitCount());
+    }
+
+    @Test
+    public void refusesCallsWhenRequestThreadsAreSaturated() throws Exception {
+        Properties properties = getProperties();
+
+        properties.setProperty("asyncThreads", "1");
+        properties.setProperty("asyncQueueSize", "1");
+        provider.close();
+        provider = connect(standIn, properties);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        Runnable blocker = new Runnable() {
+            public void run() {
+                try {
+                    latch.await();
+                }
+                catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        try {
+            // one call running and one waiting fill the pool
+            provider.getExecutor().submit(blocker);
+            provider.getExecutor().submit(blocker);
+            try {
+                new RackspaceMethod(provider).getServersAsync("/servers", null);
+                fail("The call should have been refused rather than run on the calling thread");
+            }
+            catch( CloudException expected ) {
+                assertTrue(expected.getCause() instanceof RejectedExecutionException);
+            }
+        }
+        finally {
+            latch.countDown();
+        }
+    }
+
+    private int count(@Nonnull JSONListReader reader) throws Exception {
+        int count = 0;
+
+        try {
+            while( reader.next() != null ) {
+                count++;
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return count;
+    }
+
+    private void assertRetried(int code) throws Exception {
+        CloudFilesMethod method = new CloudFilesMethod(provider);
+        RetryPolicy policy = provider.getRetryPolicy();
+
+        method.put("retry");
+
+        long retries = policy.getRetryCount();
+        long start = System.currentTimeMillis();
+
+        standIn.failNext(code, 2);
+        assertNotNull(method.list("retry", null));
+        assertEquals(2L, policy.getRetryCount() - retries);
+        // each retry waits out the one second Retry-After the stand-in sends
+        assertTrue(System.currentTimeMillis() - start >= 2000L);
+    }
+}
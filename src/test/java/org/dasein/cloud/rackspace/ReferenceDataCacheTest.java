@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.rackspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.dasein.cloud.rackspace.standin.RackspaceStandIn;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Exercises how {@link ReferenceDataCache} loads its tables against the in-memory stand-in.
+ */
+public class ReferenceDataCacheTest {
+    private RackspaceCloud   provider;
+    private RackspaceStandIn standIn;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = new RackspaceStandIn(0);
+        standIn.start();
+        provider = AbstractMethodTest.connect(standIn, AbstractMethodTest.getProperties());
+        provider.getAuthenticationContext();
+    }
+
+    @After
+    public void tearDown() {
+        provider.close();
+        standIn.stop();
+    }
+
+    @Test
+    public void sharesOneLoadBetweenWarmUpAndLookups() throws Exception {
+        final ReferenceDataCache cache = provider.getReferenceDataCache();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        long requests = standIn.getRequestCount();
+
+        standIn.setLatency(500L);
+        try {
+            cache.warmUp();
+            for( int i=0; i<8; i++ ) {
+                results.add(callers.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        return cache.list(ReferenceDataCache.FLAVORS).size();
+                    }
+                }));
+            }
+            for( Future<Integer> result : results ) {
+                assertFalse(result.get() == 0);
+            }
+            for( String table : new String[] { ReferenceDataCache.IMAGES, ReferenceDataCache.PROTOCOLS, ReferenceDataCache.ALGORITHMS } ) {
+                for( JSONObject item : cache.list(table) ) {
+                    assertFalse(item.length() == 0);
+                }
+            }
+        }
+        finally {
+            callers.shutdown();
+        }
+        // one request per table, whoever asked for it first
+        assertEquals(4L, standIn.getRequestCount() - requests);
+        assertEquals(4L, cache.getLoadCount());
+    }
+}
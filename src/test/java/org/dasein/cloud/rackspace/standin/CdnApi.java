@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.standin;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * In-memory Cloud Files CDN management API.
+ */
+class CdnApi extends StandInApi {
+    static private class Settings {
+        boolean enabled;
+        boolean logRetention;
+        long    ttl = 86400L;
+    }
+
+    private Map<String,Settings> containers = new TreeMap<String, Settings>();
+
+    @Override
+    synchronized void handle(@Nonnull HttpExchange exchange, @Nonnull String path) throws IOException, JSONException {
+        String method = exchange.getRequestMethod();
+        String name = path;
+
+        while( name.startsWith("/") ) {
+            name = name.substring(1);
+        }
+        if( name.length() < 1 ) {
+            if( !method.equals("GET") ) {
+                sendFault(exchange, 405, "badMethod", "Unsupported method " + method);
+                return;
+            }
+            JSONArray list = new JSONArray();
+
+            for( Map.Entry<String,Settings> entry : containers.entrySet() ) {
+                JSONObject item = new JSONObject();
+
+                item.put("name", entry.getKey());
+                item.put("cdn_enabled", entry.getValue().enabled);
+                item.put("ttl", entry.getValue().ttl);
+                item.put("log_retention", entry.getValue().logRetention);
+                item.put("cdn_uri", getUri(entry.getKey(), false));
+                item.put("cdn_ssl_uri", getUri(entry.getKey(), true));
+                list.put(item);
+            }
+            if( "json".equals(getQuery(exchange).get("format")) ) {
+                sendJson(exchange, 200, list);
+            }
+            else {
+                StringBuilder str = new StringBuilder();
+
+                for( String container : containers.keySet() ) {
+                    str.append(container).append("\n");
+                }
+                send(exchange, str.length() < 1 ? 204 : 200, "text/plain", str.toString().getBytes("utf-8"));
+            }
+            return;
+        }
+        Headers request = exchange.getRequestHeaders();
+        Settings settings = containers.get(name);
+
+        readBody(exchange);
+        if( method.equals("PUT") || method.equals("POST") ) {
+            boolean created = (settings == null);
+
+            if( created ) {
+                if( method.equals("POST") ) {
+                    sendEmpty(exchange, 404);
+                    return;
+                }
+                settings = new Settings();
+                settings.enabled = true;
+                containers.put(name, settings);
+            }
+            if( request.getFirst("X-CDN-Enabled") != null ) {
+                settings.enabled = request.getFirst("X-CDN-Enabled").equalsIgnoreCase("true");
+            }
+            if( request.getFirst("X-Log-Retention") != null ) {
+                settings.logRetention = request.getFirst("X-Log-Retention").equalsIgnoreCase("true");
+            }
+            if( request.getFirst("X-TTL") != null ) {
+                settings.ttl = Long.parseLong(request.getFirst("X-TTL"));
+            }
+            setHeaders(exchange, name, settings);
+            sendEmpty(exchange, created ? 201 : 202);
+        }
+        else if( method.equals("HEAD") ) {
+            if( settings == null ) {
+                sendEmpty(exchange, 404);
+            }
+            else {
+                setHeaders(exchange, name, settings);
+                sendEmpty(exchange, 204);
+            }
+        }
+        else {
+            sendFault(exchange, 405, "badMethod", "Unsupported method " + method);
+        }
+    }
+
+    private @Nonnull String getUri(@Nonnull String container, boolean ssl) {
+        String host = Integer.toHexString(container.hashCode() & 0x7fffffff);
+
+        return (ssl ? "https://" + host + ".ssl.cf1.rackcdn.com" : "http://" + host + ".r1.cf1.rackcdn.com");
+    }
+
+    private void setHeaders(@Nonnull HttpExchange exchange, @Nonnull String name, @Nonnull Settings settings) {
+        Headers response = exchange.getResponseHeaders();
+
+        response.set("X-CDN-Enabled", settings.enabled ? "True" : "False");
+        response.set("X-CDN-URI", getUri(name, false));
+        response.set("X-CDN-SSL-URI", getUri(name, true));
+        response.set("X-TTL", String.valueOf(settings.ttl));
+        response.set("X-Log-Retention", settings.logRetention ? "True" : "False");
+    }
+}
@@ -0,0 +1,324 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.standin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * In-memory Cloud Servers v1.0 API: servers, images, flavors and limits. Server listings honor
+ * <code>changes-since</code>, reporting deleted servers with a status of <code>DELETED</code>.
+ */
+class ComputeApi extends StandInApi {
+    private Map<Long,JSONObject> deleted  = new LinkedHashMap<Long, JSONObject>();
+    private Map<Long,JSONObject> flavors  = new LinkedHashMap<Long, JSONObject>();
+    private Map<Long,JSONObject> images   = new LinkedHashMap<Long, JSONObject>();
+    private Map<Long,Long>       modified = new HashMap<Long, Long>();
+    private long                 nextId  = 1000L;
+    private Random               random  = new Random();
+    private RackspaceStandIn     server;
+    private Map<Long,JSONObject> servers = new LinkedHashMap<Long, JSONObject>();
+
+    ComputeApi(@Nonnull RackspaceStandIn server) throws JSONException {
+        this.server = server;
+        addFlavor(1, "256 server", 256, 10);
+        addFlavor(2, "512 server", 512, 20);
+        addFlavor(3, "1GB server", 1024, 40);
+        addFlavor(4, "2GB server", 2048, 80);
+        addImage(112, "Ubuntu 10.04 LTS");
+        addImage(187, "CentOS 5.6");
+        addImage(28, "Windows Server 2008 R2 x64");
+    }
+
+    private void addFlavor(long id, @Nonnull String name, int ram, int disk) throws JSONException {
+        JSONObject flavor = new JSONObject();
+
+        flavor.put("id", id);
+        flavor.put("name", name);
+        flavor.put("ram", ram);
+        flavor.put("disk", disk);
+        flavors.put(id, flavor);
+    }
+
+    /**
+     * Adds a public image to the catalog.
+     */
+    synchronized @Nonnull JSONObject addImage(long id, @Nonnull String name) throws JSONException {
+        JSONObject image = new JSONObject();
+        String now = formatTimestamp(System.currentTimeMillis());
+
+        image.put("id", id);
+        image.put("name", name);
+        image.put("status", "ACTIVE");
+        image.put("created", now);
+        image.put("updated", now);
+        images.put(id, image);
+        return image;
+    }
+
+    /**
+     * Adds a server directly to the in-memory state without going through the API.
+     */
+    synchronized @Nonnull JSONObject addServer(@Nonnull String name, long imageId, long flavorId, @Nullable JSONObject metadata) throws JSONException {
+        long id = nextId++;
+        JSONObject vm = new JSONObject();
+        JSONObject addresses = new JSONObject();
+        JSONArray pub = new JSONArray();
+        JSONArray priv = new JSONArray();
+
+        pub.put("67.23." + (id/250)%250 + "." + (id%250 + 1));
+        priv.put("10.176." + (id/250)%250 + "." + (id%250 + 1));
+        addresses.put("public", pub);
+        addresses.put("private", priv);
+        vm.put("id", id);
+        vm.put("name", name);
+        vm.put("imageId", imageId);
+        vm.put("flavorId", flavorId);
+        vm.put("hostId", Long.toHexString(random.nextLong()));
+        vm.put("status", "ACTIVE");
+        vm.put("progress", 100);
+        vm.put("addresses", addresses);
+        vm.put("metadata", metadata == null ? new JSONObject() : metadata);
+        touch(vm);
+        servers.put(id, vm);
+        return vm;
+    }
+
+    private @Nullable Long getId(@Nonnull String value) {
+        try {
+            return Long.parseLong(value);
+        }
+        catch( NumberFormatException e ) {
+            return null;
+        }
+    }
+
+    synchronized int getServerCount() {
+        return servers.size();
+    }
+
+    @Override
+    void handle(@Nonnull HttpExchange exchange, @Nonnull String path) throws IOException, JSONException {
+        String method = exchange.getRequestMethod();
+        List<String> segments = new ArrayList<String>();
+
+        for( String s : path.split("/") ) {
+            if( s.length() > 0 ) {
+                segments.add(s);
+            }
+        }
+        if( segments.isEmpty() ) {
+            sendFault(exchange, 404, "itemNotFound", "No such resource");
+            return;
+        }
+        String collection = segments.get(0);
+        boolean list = (segments.size() == 1 || (segments.size() == 2 && segments.get(1).equals("detail")));
+
+        if( collection.equals("limits") && method.equals("GET") ) {
+            sendJson(exchange, 200, server.getLimits());
+        }
+        else if( collection.equals("flavors") && method.equals("GET") ) {
+            synchronized( this ) {
+                if( list ) {
+                    sendJson(exchange, 200, wrap("flavors", flavors.values()));
+                }
+                else {
+                    sendOne(exchange, "flavor", flavors.get(getId(segments.get(1))));
+                }
+            }
+        }
+        else if( collection.equals("images") ) {
+            handleImages(exchange, method, segments, list);
+        }
+        else if( collection.equals("servers") ) {
+            handleServers(exchange, method, segments, list);
+        }
+        else {
+            sendFault(exchange, 404, "itemNotFound", "No such resource " + path);
+        }
+    }
+
+    private synchronized void handleImages(@Nonnull HttpExchange exchange, @Nonnull String method, @Nonnull List<String> segments, boolean list) throws IOException, JSONException {
+        if( method.equals("GET") ) {
+            if( list ) {
+                sendListing(exchange, wrap("images", images.values()));
+            }
+            else {
+                sendOne(exchange, "image", images.get(getId(segments.get(1))));
+            }
+        }
+        else if( method.equals("POST") && segments.size() == 1 ) {
+            JSONObject request = readJson(exchange).getJSONObject("image");
+            JSONObject image = addImage(nextId++, request.getString("name"));
+
+            image.put("serverId", request.getLong("serverId"));
+            sendOne(exchange, "image", image);
+        }
+        else if( method.equals("DELETE") && segments.size() == 2 ) {
+            if( images.remove(getId(segments.get(1))) == null ) {
+                sendFault(exchange, 404, "itemNotFound", "No such image");
+            }
+            else {
+                sendEmpty(exchange, 204);
+            }
+        }
+        else {
+            sendFault(exchange, 405, "badMethod", "Unsupported method " + method);
+        }
+    }
+
+    private synchronized void handleServers(@Nonnull HttpExchange exchange, @Nonnull String method, @Nonnull List<String> segments, boolean list) throws IOException, JSONException {
+        if( method.equals("GET") ) {
+            String changesSince = getQuery(exchange).get("changes-since");
+
+            if( list && changesSince != null ) {
+                long since = Long.parseLong(changesSince) * 1000L;
+                List<JSONObject> changes = new ArrayList<JSONObject>();
+
+                for( JSONObject vm : servers.values() ) {
+                    if( modified.get(vm.getLong("id")) >= since ) {
+                        changes.add(vm);
+                    }
+                }
+                for( JSONObject vm : deleted.values() ) {
+                    if( modified.get(vm.getLong("id")) >= since ) {
+                        changes.add(vm);
+                    }
+                }
+                if( changes.isEmpty() ) {
+                    sendEmpty(exchange, 304);
+                }
+                else {
+                    sendJson(exchange, 200, wrap("servers", changes));
+                }
+            }
+            else if( list ) {
+                sendListing(exchange, wrap("servers", servers.values()));
+            }
+            else {
+                sendOne(exchange, "server", servers.get(getId(segments.get(1))));
+            }
+        }
+        else if( method.equals("POST") && segments.size() == 1 ) {
+            JSONObject request = readJson(exchange).getJSONObject("server");
+            JSONObject vm = addServer(request.getString("name"), request.getLong("imageId"), request.getLong("flavorId"), request.optJSONObject("metadata"));
+            JSONObject response = new JSONObject(vm.toString());
+
+            response.put("adminPass", UUID.randomUUID().toString().substring(0, 12));
+            JSONObject wrapper = new JSONObject();
+
+            wrapper.put("server", response);
+            sendJson(exchange, 202, wrapper);
+        }
+        else if( method.equals("POST") && segments.size() == 3 && segments.get(2).equals("action") ) {
+            JSONObject vm = servers.get(getId(segments.get(1)));
+
+            readBody(exchange);
+            if( vm == null ) {
+                sendFault(exchange, 404, "itemNotFound", "No such server");
+            }
+            else {
+                touch(vm);
+                sendEmpty(exchange, 202);
+            }
+        }
+        else if( method.equals("DELETE") && segments.size() == 2 ) {
+            JSONObject vm = servers.remove(getId(segments.get(1)));
+
+            if( vm == null ) {
+                sendFault(exchange, 404, "itemNotFound", "No such server");
+            }
+            else {
+                vm.put("status", "DELETED");
+                touch(vm);
+                deleted.put(vm.getLong("id"), vm);
+                sendEmpty(exchange, 202);
+            }
+        }
+        else {
+            sendFault(exchange, 405, "badMethod", "Unsupported method " + method);
+        }
+    }
+
+    synchronized void removeAllServers() {
+        servers.clear();
+        deleted.clear();
+        modified.clear();
+    }
+
+    /**
+     * Sends a listing with an ETag, answering 304 when the request already holds that ETag.
+     */
+    private void sendListing(@Nonnull HttpExchange exchange, @Nonnull JSONObject listing) throws IOException {
+        String etag = "\"" + StorageApi.md5(listing.toString().getBytes("utf-8")) + "\"";
+
+        exchange.getResponseHeaders().set("ETag", etag);
+        if( etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")) ) {
+            sendEmpty(exchange, 304);
+        }
+        else {
+            sendJson(exchange, 200, listing);
+        }
+    }
+
+    private void sendOne(@Nonnull HttpExchange exchange, @Nonnull String name, @Nullable JSONObject item) throws IOException, JSONException {
+        if( item == null ) {
+            sendFault(exchange, 404, "itemNotFound", "No such " + name);
+        }
+        else {
+            JSONObject wrapper = new JSONObject();
+
+            wrapper.put(name, item);
+            sendJson(exchange, 200, wrapper);
+        }
+    }
+
+    private void touch(@Nonnull JSONObject vm) throws JSONException {
+        long now = System.currentTimeMillis();
+
+        vm.put("updated", formatTimestamp(now));
+        modified.put(vm.getLong("id"), now);
+    }
+
+    private @Nonnull JSONObject wrap(@Nonnull String name, @Nonnull Iterable<JSONObject> items) throws JSONException {
+        JSONObject wrapper = new JSONObject();
+        JSONArray list = new JSONArray();
+
+        for( JSONObject item : items ) {
+            list.put(item);
+        }
+        wrapper.put(name, list);
+        return wrapper;
+    }
+}
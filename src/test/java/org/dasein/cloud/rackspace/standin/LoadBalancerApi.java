@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.standin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * In-memory Cloud Load Balancers v1.0 API.
+ */
+class LoadBalancerApi extends StandInApi {
+    static private final String[] ALGORITHMS = { "LEAST_CONNECTIONS", "RANDOM", "ROUND_ROBIN", "WEIGHTED_LEAST_CONNECTIONS", "WEIGHTED_ROUND_ROBIN" };
+    static private final Object[][] PROTOCOLS = { { "HTTP", 80 }, { "HTTPS", 443 }, { "FTP", 21 }, { "IMAPS", 993 }, { "LDAP", 389 }, { "POP3", 110 }, { "SMTP", 25 }, { "TCP", 0 } };
+
+    private Map<Long,JSONObject> loadBalancers = new LinkedHashMap<Long, JSONObject>();
+    private long                 nextId        = 100L;
+    private RackspaceStandIn     server;
+
+    LoadBalancerApi(@Nonnull RackspaceStandIn server) {
+        this.server = server;
+    }
+
+    private @Nonnull JSONArray assignNodeIds(@Nonnull JSONArray nodes) throws JSONException {
+        for( int i=0; i<nodes.length(); i++ ) {
+            JSONObject node = nodes.getJSONObject(i);
+
+            node.put("id", nextId++);
+            node.put("status", "ONLINE");
+            if( !node.has("condition") ) {
+                node.put("condition", "ENABLED");
+            }
+        }
+        return nodes;
+    }
+
+    @Override
+    synchronized void handle(@Nonnull HttpExchange exchange, @Nonnull String path) throws IOException, JSONException {
+        String method = exchange.getRequestMethod();
+        List<String> segments = new ArrayList<String>();
+
+        for( String s : path.split("/") ) {
+            if( s.length() > 0 ) {
+                segments.add(s);
+            }
+        }
+        if( segments.size() == 1 && segments.get(0).equals("limits") && method.equals("GET") ) {
+            sendJson(exchange, 200, server.getLimits());
+            return;
+        }
+        if( segments.isEmpty() || !segments.get(0).equals("loadbalancers") ) {
+            sendFault(exchange, 404, "itemNotFound", "No such resource " + path);
+            return;
+        }
+        if( segments.size() == 1 ) {
+            if( method.equals("GET") ) {
+                JSONArray list = new JSONArray();
+
+                for( JSONObject lb : loadBalancers.values() ) {
+                    JSONObject summary = new JSONObject();
+
+                    summary.put("id", lb.get("id"));
+                    summary.put("name", lb.get("name"));
+                    summary.put("status", lb.get("status"));
+                    list.put(summary);
+                }
+                sendJson(exchange, 200, new JSONObject().put("loadBalancers", list));
+            }
+            else if( method.equals("POST") ) {
+                JSONObject lb = readJson(exchange).getJSONObject("loadBalancer");
+                long id = nextId++;
+                String now = formatTimestamp(System.currentTimeMillis());
+                JSONArray ips = lb.optJSONArray("virtualIps");
+                JSONArray assigned = new JSONArray();
+
+                if( ips != null ) {
+                    for( int i=0; i<ips.length(); i++ ) {
+                        JSONObject ip = new JSONObject();
+
+                        ip.put("id", nextId++);
+                        ip.put("address", "174.143." + (id/250)%250 + "." + (id%250 + 1));
+                        ip.put("type", ips.getJSONObject(i).optString("type", "PUBLIC"));
+                        ip.put("ipVersion", "IPV4");
+                        assigned.put(ip);
+                    }
+                }
+                lb.put("id", id);
+                lb.put("status", "ACTIVE");
+                lb.put("virtualIps", assigned);
+                lb.put("nodes", assignNodeIds(lb.has("nodes") ? lb.getJSONArray("nodes") : new JSONArray()));
+                lb.put("created", new JSONObject().put("time", now));
+                lb.put("updated", new JSONObject().put("time", now));
+                loadBalancers.put(id, lb);
+                sendJson(exchange, 202, new JSONObject().put("loadBalancer", lb));
+            }
+            else {
+                sendFault(exchange, 405, "badMethod", "Unsupported method " + method);
+            }
+            return;
+        }
+        String id = segments.get(1);
+
+        if( segments.size() == 2 && id.equals("protocols") && method.equals("GET") ) {
+            JSONArray list = new JSONArray();
+
+            for( Object[] protocol : PROTOCOLS ) {
+                list.put(new JSONObject().put("name", protocol[0]).put("port", protocol[1]));
+            }
+            sendJson(exchange, 200, new JSONObject().put("protocols", list));
+            return;
+        }
+        if( segments.size() == 2 && id.equals("algorithms") && method.equals("GET") ) {
+            JSONArray list = new JSONArray();
+
+            for( String algorithm : ALGORITHMS ) {
+                list.put(new JSONObject().put("name", algorithm));
+            }
+            sendJson(exchange, 200, new JSONObject().put("algorithms", list));
+            return;
+        }
+        JSONObject lb;
+
+        try {
+            lb = loadBalancers.get(Long.parseLong(id));
+        }
+        catch( NumberFormatException e ) {
+            lb = null;
+        }
+        if( lb == null ) {
+            sendFault(exchange, 404, "itemNotFound", "No such load balancer " + id);
+            return;
+        }
+        if( segments.size() == 2 ) {
+            if( method.equals("GET") ) {
+                sendJson(exchange, 200, new JSONObject().put("loadBalancer", lb));
+            }
+            else if( method.equals("DELETE") ) {
+                loadBalancers.remove(lb.getLong("id"));
+                sendEmpty(exchange, 202);
+            }
+            else {
+                sendFault(exchange, 405, "badMethod", "Unsupported method " + method);
+            }
+        }
+        else if( segments.get(2).equals("nodes") ) {
+            JSONArray nodes = lb.getJSONArray("nodes");
+
+            if( segments.size() == 3 && method.equals("GET") ) {
+                sendJson(exchange, 200, new JSONObject().put("nodes", nodes));
+            }
+            else if( segments.size() == 3 && method.equals("POST") ) {
+                JSONArray added = assignNodeIds(readJson(exchange).getJSONArray("nodes"));
+
+                for( int i=0; i<added.length(); i++ ) {
+                    nodes.put(added.getJSONObject(i));
+                }
+                sendJson(exchange, 202, new JSONObject().put("nodes", added));
+            }
+            else if( segments.size() == 4 && method.equals("DELETE") ) {
+                JSONArray remaining = new JSONArray();
+                boolean found = false;
+
+                for( int i=0; i<nodes.length(); i++ ) {
+                    JSONObject node = nodes.getJSONObject(i);
+
+                    if( node.getString("id").equals(segments.get(3)) ) {
+                        found = true;
+                    }
+                    else {
+                        remaining.put(node);
+                    }
+                }
+                if( !found ) {
+                    sendFault(exchange, 404, "itemNotFound", "No such node " + segments.get(3));
+                    return;
+                }
+                lb.put("nodes", remaining);
+                sendEmpty(exchange, 202);
+            }
+            else {
+                sendFault(exchange, 405, "badMethod", "Unsupported method " + method);
+            }
+        }
+        else {
+            sendFault(exchange, 404, "itemNotFound", "No such resource " + path);
+        }
+    }
+}
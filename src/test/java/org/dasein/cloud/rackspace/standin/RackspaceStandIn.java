@@ -0,0 +1,393 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.standin;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Embeddable stand-in for the Rackspace v1.0 APIs, backed entirely by in-memory state, for functional and
+ * load testing without live credentials. Point a provider context at {@link #getEndpoint()} and authenticate
+ * with any key (or the ones given to {@link #setCredentials(String, String)}). The stand-in emulates the
+ * authentication handshake, Cloud Servers (servers, images, flavors, limits), Cloud Load Balancers,
+ * Cloud Files and the CDN API. Latency, error rate and a request rate limit can be injected while it runs.
+ * <p>
+ * It may also be run on its own for benchmarks: <code>java org.dasein.cloud.rackspace.standin.RackspaceStandIn [port]</code>
+ * </p>
+ */
+public class RackspaceStandIn {
+    static public void main(String ... args) throws IOException {
+        RackspaceStandIn standIn = new RackspaceStandIn(args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+
+        standIn.start();
+        System.out.println("Rackspace stand-in listening at " + standIn.getEndpoint());
+    }
+
+    private String           account = "123456";
+    private String           apiKey;
+    private CdnApi           cdn;
+    private ComputeApi       compute;
+    private volatile double  errorRate;
+    private ExecutorService  executor;
+    private int              failCode;
+    private int              failCount;
+    private List<String[]>   failMatching = new ArrayList<String[]>();
+    private volatile long    latency;
+    private LoadBalancerApi  loadBalancers;
+    private int              port;
+    private volatile int     rateLimit;
+    private long             rateWindow;
+    private int              rateWindowCount;
+    private Random           random = new Random();
+    private AtomicLong       requests = new AtomicLong(0L);
+    private HttpServer       server;
+    private StorageApi       storage;
+    private Set<String>      tokens = Collections.synchronizedSet(new HashSet<String>());
+    private String           user;
+
+    /**
+     * @param port the local port to listen on, or 0 to pick any free port
+     */
+    public RackspaceStandIn(@Nonnegative int port) {
+        this.port = port;
+        try {
+            compute = new ComputeApi(this);
+        }
+        catch( JSONException e ) {
+            throw new RuntimeException(e);
+        }
+        loadBalancers = new LoadBalancerApi(this);
+        storage = new StorageApi();
+        cdn = new CdnApi();
+    }
+
+    private void authenticate(@Nonnull HttpExchange exchange) throws IOException {
+        String u = exchange.getRequestHeaders().getFirst("X-Auth-User");
+        String k = exchange.getRequestHeaders().getFirst("X-Auth-Key");
+
+        if( u == null || k == null || (user != null && !user.equals(u)) || (apiKey != null && !apiKey.equals(k)) ) {
+            StandInApi.sendFault(exchange, 401, "unauthorized", "Username or api key is invalid");
+            return;
+        }
+        String token = UUID.randomUUID().toString();
+        String base = getBaseUrl();
+
+        tokens.add(token);
+        exchange.getResponseHeaders().set("X-Auth-Token", token);
+        exchange.getResponseHeaders().set("X-Server-Management-Url", base + "/servers/v1.0/" + account);
+        exchange.getResponseHeaders().set("X-Storage-Url", base + "/storage/v1/MossoCloudFS_" + account);
+        exchange.getResponseHeaders().set("X-Storage-Token", token);
+        exchange.getResponseHeaders().set("X-CDN-Management-Url", base + "/cdn/v1/MossoCloudFS_" + account);
+        StandInApi.sendEmpty(exchange, 204);
+    }
+
+    /**
+     * Invalidates every token handed out so far, forcing clients to authenticate again.
+     */
+    public void expireTokens() {
+        tokens.clear();
+    }
+
+    public @Nonnull String getAccountNumber() {
+        return account;
+    }
+
+    private @Nonnull String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return the authentication endpoint to use in the provider context
+     */
+    public @Nonnull String getEndpoint() {
+        if( server == null ) {
+            throw new IllegalStateException("The stand-in has not been started");
+        }
+        return getBaseUrl() + "/v1.0";
+    }
+
+    @Nonnull JSONObject getLimits() throws JSONException {
+        JSONObject limits = new JSONObject();
+        JSONArray rates = new JSONArray();
+        int perMinute = (rateLimit > 0 ? rateLimit * 60 : 10000);
+
+        for( String verb : new String[] { "GET", "POST", "PUT", "DELETE" } ) {
+            JSONObject rate = new JSONObject();
+
+            rate.put("verb", verb);
+            rate.put("URI", "*");
+            rate.put("regex", ".*");
+            rate.put("value", perMinute);
+            rate.put("remaining", perMinute);
+            rate.put("unit", "MINUTE");
+            rate.put("resetTime", System.currentTimeMillis()/1000L);
+            rates.put(rate);
+        }
+        limits.put("rate", rates);
+        limits.put("absolute", new JSONObject().put("maxTotalRAMSize", 51200).put("maxIPGroups", 25).put("maxIPGroupMembers", 25));
+        return new JSONObject().put("limits", limits);
+    }
+
+    /**
+     * @return the number of requests received since the stand-in started
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public int getServerCount() {
+        return compute.getServerCount();
+    }
+
+    public int getObjectCount(@Nonnull String container) {
+        return storage.getObjectCount(container);
+    }
+
+    private void handle(@Nonnull HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            long delay = latency;
+
+            if( delay > 0L ) {
+                // +/- 25% so that concurrent callers do not move in lock step
+                Thread.sleep(delay + (long)((random.nextDouble() - 0.5) * delay / 2));
+            }
+            String path = exchange.getRequestURI().getPath();
+
+            if( path.equals("/v1.0") || path.equals("/v1.0/") ) {
+                authenticate(exchange);
+                return;
+            }
+            String token = exchange.getRequestHeaders().getFirst("X-Auth-Token");
+
+            if( token == null || !tokens.contains(token) ) {
+                StandInApi.sendFault(exchange, 401, "unauthorized", "Token is invalid or expired");
+                return;
+            }
+            if( isFailing(exchange) ) {
+                return;
+            }
+            if( errorRate > 0.0 && random.nextDouble() < errorRate ) {
+                StandInApi.sendFault(exchange, 503, "serviceUnavailable", "The service is currently unavailable");
+                return;
+            }
+            if( isOverLimit() ) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                StandInApi.sendFault(exchange, 413, "overLimit", "Too many requests");
+                return;
+            }
+            int idx = path.indexOf('/', 1);
+            String family = (idx < 0 ? path.substring(1) : path.substring(1, idx));
+            // the client derives the load balancer endpoint from the server endpoint and its own region
+            String lb = (family.endsWith("loadbalancers") ? "/" + family : "/loadbalancers");
+            String[] prefixes = { "/servers/v1.0/" + account, lb + "/v1.0/" + account, "/storage/v1/MossoCloudFS_" + account, "/cdn/v1/MossoCloudFS_" + account };
+            StandInApi[] apis = { compute, loadBalancers, storage, cdn };
+
+            for( int i=0; i<prefixes.length; i++ ) {
+                if( path.equals(prefixes[i]) || path.startsWith(prefixes[i] + "/") ) {
+                    apis[i].handle(exchange, path.substring(prefixes[i].length()));
+                    return;
+                }
+            }
+            StandInApi.sendFault(exchange, 404, "itemNotFound", "No such endpoint " + path);
+        }
+        catch( JSONException e ) {
+            StandInApi.sendFault(exchange, 400, "badRequest", "Invalid JSON: " + e.getMessage());
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            StandInApi.sendEmpty(exchange, 500);
+        }
+        catch( RuntimeException e ) {
+            StandInApi.sendFault(exchange, 500, "cloudServersFault", String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Answers the next few authenticated requests with the specified status and a one second <code>Retry-After</code>.
+     * @param code 413 for <code>overLimit</code> or 503 for <code>serviceUnavailable</code>
+     * @param count the number of requests to fail
+     */
+    public synchronized void failNext(int code, @Nonnegative int count) {
+        failCode = code;
+        failCount = count;
+    }
+
+    /**
+     * Answers the next request with the specified method whose path contains the specified text with a server
+     * error that carries no <code>Retry-After</code>, as a failure the client does not retry on its own.
+     * @param method the HTTP method to match
+     * @param fragment text the request path must contain
+     * @param code the status to answer with
+     */
+    public synchronized void failMatching(@Nonnull String method, @Nonnull String fragment, int code) {
+        failMatching.add(new String[] { method, fragment, String.valueOf(code), null });
+    }
+
+    /**
+     * Answers the next ranged GET of a path containing the specified text that starts at the specified offset with
+     * a server error that carries no <code>Retry-After</code>.
+     * @param fragment text the request path must contain
+     * @param first the first byte of the range to fail
+     * @param code the status to answer with
+     */
+    public synchronized void failRange(@Nonnull String fragment, @Nonnegative long first, int code) {
+        failMatching.add(new String[] { "GET", fragment, String.valueOf(code), "bytes=" + first + "-" });
+    }
+
+    private boolean isFailing(@Nonnull HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String[] match = null;
+        int code;
+
+        synchronized( this ) {
+            for( String[] candidate : failMatching ) {
+                String range = exchange.getRequestHeaders().getFirst("Range");
+
+                if( candidate[3] != null && (range == null || !range.startsWith(candidate[3])) ) {
+                    continue;
+                }
+                if( candidate[0].equals(exchange.getRequestMethod()) && path.contains(candidate[1]) ) {
+                    match = candidate;
+                    break;
+                }
+            }
+            if( match != null ) {
+                failMatching.remove(match);
+            }
+            else if( failCount < 1 ) {
+                return false;
+            }
+            else {
+                failCount--;
+            }
+            code = (match == null ? failCode : Integer.parseInt(match[2]));
+        }
+        if( match != null ) {
+            StandInApi.readBody(exchange);
+            StandInApi.sendFault(exchange, code, "cloudServersFault", "Injected failure");
+            return true;
+        }
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        if( code == 413 ) {
+            StandInApi.sendFault(exchange, 413, "overLimit", "Too many requests");
+        }
+        else {
+            StandInApi.sendFault(exchange, code, "serviceUnavailable", "The service is currently unavailable");
+        }
+        return true;
+    }
+
+    private synchronized boolean isOverLimit() {
+        int limit = rateLimit;
+
+        if( limit < 1 ) {
+            return false;
+        }
+        long window = System.currentTimeMillis()/1000L;
+
+        if( window != rateWindow ) {
+            rateWindow = window;
+            rateWindowCount = 0;
+        }
+        return (++rateWindowCount > limit);
+    }
+
+    /**
+     * @param bulkDelete false to answer bulk delete requests as an account without the middleware would
+     */
+    public void setBulkDelete(boolean bulkDelete) {
+        storage.setBulkDelete(bulkDelete);
+    }
+
+    /**
+     * Restricts authentication to the specified user and API key. By default any credentials are accepted.
+     */
+    public void setCredentials(@Nullable String user, @Nullable String apiKey) {
+        this.user = user;
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * @param errorRate the fraction of authenticated requests, between 0 and 1, answered with 503 serviceUnavailable
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param latency the average number of milliseconds to hold every request before answering it
+     */
+    public void setLatency(@Nonnegative long latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @param rateLimit the number of authenticated requests per second allowed before answering 413 overLimit, or 0 for no limit
+     */
+    public void setRateLimit(@Nonnegative int rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public synchronized void start() throws IOException {
+        if( server != null ) {
+            return;
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                RackspaceStandIn.this.handle(exchange);
+            }
+        });
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if( server != null ) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.standin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Base for the emulated APIs behind {@link RackspaceStandIn}, with the response helpers they share.
+ */
+abstract class StandInApi {
+    static @Nonnull String formatTimestamp(long timestamp) {
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+
+        fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return fmt.format(timestamp);
+    }
+
+    static @Nonnull Map<String,String> getQuery(@Nonnull HttpExchange exchange) throws IOException {
+        HashMap<String,String> query = new HashMap<String, String>();
+        String raw = exchange.getRequestURI().getRawQuery();
+
+        if( raw != null ) {
+            for( String pair : raw.split("&") ) {
+                int idx = pair.indexOf('=');
+
+                if( idx < 0 ) {
+                    query.put(URLDecoder.decode(pair, "utf-8"), "");
+                }
+                else {
+                    query.put(URLDecoder.decode(pair.substring(0, idx), "utf-8"), URLDecoder.decode(pair.substring(idx+1), "utf-8"));
+                }
+            }
+        }
+        return query;
+    }
+
+    static @Nonnull byte[] readBody(@Nonnull HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = exchange.getRequestBody();
+        byte[] buffer = new byte[8192];
+        int count;
+
+        while( (count = in.read(buffer)) != -1 ) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    static @Nonnull JSONObject readJson(@Nonnull HttpExchange exchange) throws IOException, JSONException {
+        byte[] body = readBody(exchange);
+
+        return new JSONObject(body.length < 1 ? "{}" : new String(body, "utf-8"));
+    }
+
+    static void send(@Nonnull HttpExchange exchange, int code, @Nullable String contentType, @Nullable byte[] body) throws IOException {
+        if( contentType != null ) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        if( body == null || body.length < 1 || exchange.getRequestMethod().equals("HEAD") || code == 204 || code == 304 ) {
+            exchange.sendResponseHeaders(code, -1);
+        }
+        else {
+            exchange.sendResponseHeaders(code, body.length);
+            OutputStream out = exchange.getResponseBody();
+
+            out.write(body);
+            out.close();
+        }
+        exchange.close();
+    }
+
+    static void sendEmpty(@Nonnull HttpExchange exchange, int code) throws IOException {
+        send(exchange, code, null, null);
+    }
+
+    /**
+     * Sends a fault in the wrapped form the Rackspace APIs use, for example <code>{"itemNotFound":{...}}</code>.
+     */
+    static void sendFault(@Nonnull HttpExchange exchange, int code, @Nonnull String type, @Nonnull String message) throws IOException {
+        try {
+            JSONObject fault = new JSONObject();
+            JSONObject wrapper = new JSONObject();
+
+            fault.put("code", code);
+            fault.put("message", message);
+            fault.put("details", message);
+            wrapper.put(type, fault);
+            sendJson(exchange, code, wrapper);
+        }
+        catch( JSONException e ) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    static void sendJson(@Nonnull HttpExchange exchange, int code, @Nonnull Object json) throws IOException {
+        send(exchange, code, "application/json", json.toString().getBytes("utf-8"));
+    }
+
+    /**
+     * Handles a request addressed to this API.
+     * @param exchange the request
+     * @param path the path below the account, such as <code>/servers/detail</code> or <code>/container/object</code>
+     */
+    abstract void handle(@Nonnull HttpExchange exchange, @Nonnull String path) throws IOException, JSONException;
+}
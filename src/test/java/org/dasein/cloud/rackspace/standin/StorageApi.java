@@ -0,0 +1,572 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.standin;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * In-memory Cloud Files (Swift) API covering containers, objects, server side copies, manifests and ranged reads.
+ */
+class StorageApi extends StandInApi {
+    static private final int MAX_LISTING = 10000;
+
+    static class StoredObject {
+        String             contentType;
+        byte[]             data;
+        String             etag;
+        long               lastModified;
+        String             manifest;
+        Map<String,String> metadata = new HashMap<String, String>();
+    }
+
+    private boolean                                          bulkDelete = true;
+    private SortedMap<String,SortedMap<String,StoredObject>> containers = new TreeMap<String, SortedMap<String, StoredObject>>();
+
+    static @Nonnull String md5(@Nonnull byte[] data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            StringBuilder str = new StringBuilder();
+
+            for( byte b : digest.digest(data) ) {
+                str.append(String.format("%02x", b));
+            }
+            return str.toString();
+        }
+        catch( NoSuchAlgorithmException e ) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private @Nonnull byte[] assemble(@Nonnull StoredObject object) throws UnsupportedEncodingException {
+        if( object.manifest == null ) {
+            return object.data;
+        }
+        int idx = object.manifest.indexOf('/');
+        SortedMap<String,StoredObject> container = containers.get(idx < 0 ? object.manifest : object.manifest.substring(0, idx));
+        String prefix = (idx < 0 ? "" : object.manifest.substring(idx+1));
+        List<byte[]> parts = new ArrayList<byte[]>();
+        StringBuilder etags = new StringBuilder();
+        int length = 0;
+
+        if( container != null ) {
+            for( Map.Entry<String,StoredObject> entry : container.tailMap(prefix).entrySet() ) {
+                if( !entry.getKey().startsWith(prefix) ) {
+                    break;
+                }
+                parts.add(entry.getValue().data);
+                etags.append(entry.getValue().etag);
+                length += entry.getValue().data.length;
+            }
+        }
+        byte[] data = new byte[length];
+        int offset = 0;
+
+        for( byte[] part : parts ) {
+            System.arraycopy(part, 0, data, offset, part.length);
+            offset += part.length;
+        }
+        object.etag = "\"" + md5(etags.toString().getBytes("utf-8")) + "\"";
+        return data;
+    }
+
+    private boolean copy(@Nonnull String source, @Nonnull String targetContainer, @Nonnull String targetName) {
+        if( source.startsWith("/") ) {
+            source = source.substring(1);
+        }
+        int idx = source.indexOf('/');
+
+        if( idx < 1 ) {
+            return false;
+        }
+        SortedMap<String,StoredObject> from = containers.get(source.substring(0, idx));
+        SortedMap<String,StoredObject> to = containers.get(targetContainer);
+        StoredObject original = (from == null ? null : from.get(source.substring(idx+1)));
+
+        if( original == null || to == null ) {
+            return false;
+        }
+        StoredObject copy = new StoredObject();
+
+        copy.data = original.data;
+        copy.contentType = original.contentType;
+        copy.etag = original.etag;
+        copy.lastModified = System.currentTimeMillis();
+        copy.manifest = original.manifest;
+        copy.metadata.putAll(original.metadata);
+        to.put(targetName, copy);
+        return true;
+    }
+
+    synchronized void setBulkDelete(boolean bulkDelete) {
+        this.bulkDelete = bulkDelete;
+    }
+
+    synchronized int getObjectCount(@Nonnull String container) {
+        SortedMap<String,StoredObject> objects = containers.get(container);
+
+        return (objects == null ? 0 : objects.size());
+    }
+
+    @Override
+    synchronized void handle(@Nonnull HttpExchange exchange, @Nonnull String path) throws IOException, JSONException {
+        String method = exchange.getRequestMethod();
+
+        while( path.startsWith("/") ) {
+            path = path.substring(1);
+        }
+        int idx = path.indexOf('/');
+        String container = (idx < 0 ? path : path.substring(0, idx));
+        String object = (idx < 0 ? null : path.substring(idx+1));
+
+        if( object != null && object.length() < 1 ) {
+            object = null;
+        }
+        if( container.length() < 1 ) {
+            handleAccount(exchange, method);
+        }
+        else if( object == null ) {
+            handleContainer(exchange, method, container);
+        }
+        else {
+            handleObject(exchange, method, container, object);
+        }
+    }
+
+    private void handleAccount(@Nonnull HttpExchange exchange, @Nonnull String method) throws IOException, JSONException {
+        long bytes = 0L;
+
+        for( SortedMap<String,StoredObject> objects : containers.values() ) {
+            for( StoredObject o : objects.values() ) {
+                bytes += o.data.length;
+            }
+        }
+        exchange.getResponseHeaders().set("X-Account-Container-Count", String.valueOf(containers.size()));
+        exchange.getResponseHeaders().set("X-Account-Bytes-Used", String.valueOf(bytes));
+        if( method.equals("HEAD") ) {
+            sendEmpty(exchange, 204);
+        }
+        else if( method.equals("GET") ) {
+            Map<String,String> query = getQuery(exchange);
+            List<String> names = page(new ArrayList<String>(containers.keySet()), query);
+
+            if( "json".equals(query.get("format")) ) {
+                JSONArray list = new JSONArray();
+
+                for( String name : names ) {
+                    long used = 0L;
+
+                    for( StoredObject o : containers.get(name).values() ) {
+                        used += o.data.length;
+                    }
+                    list.put(new JSONObject().put("name", name).put("count", containers.get(name).size()).put("bytes", used));
+                }
+                sendJson(exchange, 200, list);
+            }
+            else {
+                sendNames(exchange, names);
+            }
+        }
+        else if( method.equals("POST") ) {
+            byte[] body = readBody(exchange);
+
+            if( bulkDelete && getQuery(exchange).containsKey("bulk-delete") ) {
+                bulkDelete(exchange, new String(body, "utf-8"));
+            }
+            else {
+                sendEmpty(exchange, 204);
+            }
+        }
+        else {
+            sendFault(exchange, 405, "badMethod", "Unsupported method " + method);
+        }
+    }
+
+    private void bulkDelete(@Nonnull HttpExchange exchange, @Nonnull String body) throws IOException, JSONException {
+        JSONArray errors = new JSONArray();
+        int deleted = 0, notFound = 0;
+
+        for( String line : body.split("\n") ) {
+            String path = URLDecoder.decode(line.trim(), "utf-8");
+
+            while( path.startsWith("/") ) {
+                path = path.substring(1);
+            }
+            if( path.length() < 1 ) {
+                continue;
+            }
+            int idx = path.indexOf('/');
+            SortedMap<String,StoredObject> objects = containers.get(idx < 0 ? path : path.substring(0, idx));
+
+            if( objects == null ) {
+                notFound++;
+            }
+            else if( idx < 0 ) {
+                if( objects.isEmpty() ) {
+                    containers.remove(path);
+                    deleted++;
+                }
+                else {
+                    errors.put(new JSONArray().put("/" + path).put("409 Conflict"));
+                }
+            }
+            else if( objects.remove(path.substring(idx+1)) == null ) {
+                notFound++;
+            }
+            else {
+                deleted++;
+            }
+        }
+        JSONObject result = new JSONObject();
+
+        result.put("Number Deleted", deleted);
+        result.put("Number Not Found", notFound);
+        result.put("Response Body", "");
+        result.put("Response Status", errors.length() > 0 ? "400 Bad Request" : "200 OK");
+        result.put("Errors", errors);
+        sendJson(exchange, 200, result);
+    }
+
+    private void handleContainer(@Nonnull HttpExchange exchange, @Nonnull String method, @Nonnull String name) throws IOException, JSONException {
+        SortedMap<String,StoredObject> objects = containers.get(name);
+
+        if( method.equals("PUT") ) {
+            readBody(exchange);
+            if( objects == null ) {
+                containers.put(name, new TreeMap<String, StoredObject>());
+                sendEmpty(exchange, 201);
+            }
+            else {
+                sendEmpty(exchange, 202);
+            }
+            return;
+        }
+        if( objects == null ) {
+            sendEmpty(exchange, 404);
+            return;
+        }
+        if( method.equals("DELETE") ) {
+            if( !objects.isEmpty() ) {
+                send(exchange, 409, "text/plain", "There was a conflict when trying to complete your request.".getBytes("utf-8"));
+            }
+            else {
+                containers.remove(name);
+                sendEmpty(exchange, 204);
+            }
+        }
+        else if( method.equals("HEAD") ) {
+            long bytes = 0L;
+
+            for( StoredObject o : objects.values() ) {
+                bytes += o.data.length;
+            }
+            exchange.getResponseHeaders().set("X-Container-Object-Count", String.valueOf(objects.size()));
+            exchange.getResponseHeaders().set("X-Container-Bytes-Used", String.valueOf(bytes));
+            sendEmpty(exchange, 204);
+        }
+        else if( method.equals("GET") ) {
+            Map<String,String> query = getQuery(exchange);
+            String prefix = query.get("prefix");
+            String delimiter = query.get("delimiter");
+            List<String> names = new ArrayList<String>();
+
+            for( String key : objects.keySet() ) {
+                if( prefix != null && !key.startsWith(prefix) ) {
+                    continue;
+                }
+                if( delimiter != null && delimiter.length() > 0 ) {
+                    int start = (prefix == null ? 0 : prefix.length());
+                    int idx = key.indexOf(delimiter, start);
+
+                    if( idx > -1 ) {
+                        String subdir = key.substring(0, idx + delimiter.length());
+
+                        if( names.isEmpty() || !names.get(names.size()-1).equals(subdir) ) {
+                            names.add(subdir);
+                        }
+                        continue;
+                    }
+                }
+                names.add(key);
+            }
+            names = page(names, query);
+            if( "json".equals(query.get("format")) ) {
+                JSONArray list = new JSONArray();
+
+                for( String key : names ) {
+                    StoredObject o = objects.get(key);
+
+                    if( o == null ) {
+                        list.put(new JSONObject().put("subdir", key));
+                    }
+                    else {
+                        JSONObject item = new JSONObject();
+
+                        item.put("name", key);
+                        item.put("hash", o.etag.replaceAll("\"", ""));
+                        item.put("bytes", o.data.length);
+                        item.put("content_type", o.contentType);
+                        item.put("last_modified", formatSwiftTimestamp(o.lastModified));
+                        list.put(item);
+                    }
+                }
+                sendJson(exchange, 200, list);
+            }
+            else {
+                sendNames(exchange, names);
+            }
+        }
+        else if( method.equals("POST") ) {
+            readBody(exchange);
+            sendEmpty(exchange, 204);
+        }
+        else {
+            sendFault(exchange, 405, "badMethod", "Unsupported method " + method);
+        }
+    }
+
+    private void handleObject(@Nonnull HttpExchange exchange, @Nonnull String method, @Nonnull String container, @Nonnull String name) throws IOException {
+        Headers request = exchange.getRequestHeaders();
+        SortedMap<String,StoredObject> objects = containers.get(container);
+
+        if( objects == null ) {
+            readBody(exchange);
+            sendEmpty(exchange, 404);
+            return;
+        }
+        if( method.equals("PUT") ) {
+            String source = request.getFirst("X-Copy-From");
+
+            if( source != null ) {
+                readBody(exchange);
+                if( copy(source, container, name) ) {
+                    exchange.getResponseHeaders().set("ETag", objects.get(name).etag);
+                    sendEmpty(exchange, 201);
+                }
+                else {
+                    sendEmpty(exchange, 404);
+                }
+                return;
+            }
+            StoredObject o = new StoredObject();
+
+            o.data = readBody(exchange);
+            o.etag = "\"" + md5(o.data) + "\"";
+            String expected = request.getFirst("ETag");
+
+            if( expected != null && !expected.replaceAll("\"", "").equalsIgnoreCase(o.etag.replaceAll("\"", "")) ) {
+                sendEmpty(exchange, 422);
+                return;
+            }
+            o.contentType = request.getFirst("Content-Type");
+            if( o.contentType == null ) {
+                o.contentType = "application/octet-stream";
+            }
+            o.lastModified = System.currentTimeMillis();
+            o.manifest = request.getFirst("X-Object-Manifest");
+            for( Map.Entry<String,List<String>> header : request.entrySet() ) {
+                if( header.getKey().toLowerCase(Locale.ENGLISH).startsWith("x-object-meta-") && !header.getValue().isEmpty() ) {
+                    o.metadata.put(header.getKey(), header.getValue().get(0));
+                }
+            }
+            objects.put(name, o);
+            exchange.getResponseHeaders().set("ETag", o.etag);
+            sendEmpty(exchange, 201);
+            return;
+        }
+        if( method.equals("COPY") ) {
+            String destination = request.getFirst("Destination");
+
+            readBody(exchange);
+            if( destination == null ) {
+                sendEmpty(exchange, 412);
+                return;
+            }
+            while( destination.startsWith("/") ) {
+                destination = destination.substring(1);
+            }
+            int idx = destination.indexOf('/');
+
+            if( idx < 1 || !copy(container + "/" + name, destination.substring(0, idx), destination.substring(idx+1)) ) {
+                sendEmpty(exchange, 404);
+            }
+            else {
+                sendEmpty(exchange, 201);
+            }
+            return;
+        }
+        StoredObject o = objects.get(name);
+
+        if( o == null ) {
+            readBody(exchange);
+            sendEmpty(exchange, 404);
+            return;
+        }
+        if( method.equals("DELETE") ) {
+            objects.remove(name);
+            sendEmpty(exchange, 204);
+        }
+        else if( method.equals("POST") ) {
+            readBody(exchange);
+            sendEmpty(exchange, 202);
+        }
+        else if( method.equals("GET") || method.equals("HEAD") ) {
+            byte[] data = assemble(o);
+            Headers response = exchange.getResponseHeaders();
+            String match = request.getFirst("If-None-Match");
+
+            response.set("ETag", o.etag);
+            response.set("Last-Modified", formatHttpDate(o.lastModified));
+            response.set("Content-Type", o.contentType);
+            response.set("Accept-Ranges", "bytes");
+            for( Map.Entry<String,String> entry : o.metadata.entrySet() ) {
+                response.set(entry.getKey(), entry.getValue());
+            }
+            if( o.manifest != null ) {
+                response.set("X-Object-Manifest", o.manifest);
+            }
+            if( match != null && match.replaceAll("\"", "").equals(o.etag.replaceAll("\"", "")) ) {
+                sendEmpty(exchange, 304);
+                return;
+            }
+            if( method.equals("HEAD") ) {
+                response.set("Content-Length", String.valueOf(data.length));
+                sendEmpty(exchange, 200);
+                return;
+            }
+            String range = request.getFirst("Range");
+
+            if( range != null && range.startsWith("bytes=") && range.indexOf(',') < 0 ) {
+                String spec = range.substring("bytes=".length()).trim();
+                int dash = spec.indexOf('-');
+                long first, last;
+
+                try {
+                    if( dash == 0 ) {
+                        first = Math.max(0L, data.length - Long.parseLong(spec.substring(1)));
+                        last = data.length - 1;
+                    }
+                    else {
+                        first = Long.parseLong(spec.substring(0, dash));
+                        last = (dash == spec.length()-1 ? data.length - 1 : Math.min(data.length - 1, Long.parseLong(spec.substring(dash+1))));
+                    }
+                }
+                catch( NumberFormatException e ) {
+                    first = 0L;
+                    last = -1L;
+                }
+                if( first > last || first >= data.length ) {
+                    response.set("Content-Range", "bytes */" + data.length);
+                    sendEmpty(exchange, 416);
+                    return;
+                }
+                byte[] part = new byte[(int)(last - first + 1)];
+
+                System.arraycopy(data, (int)first, part, 0, part.length);
+                response.set("Content-Range", "bytes " + first + "-" + last + "/" + data.length);
+                send(exchange, 206, null, part);
+                return;
+            }
+            send(exchange, 200, null, data);
+        }
+        else {
+            readBody(exchange);
+            sendEmpty(exchange, 405);
+        }
+    }
+
+    static @Nonnull String formatHttpDate(long timestamp) {
+        SimpleDateFormat fmt = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+
+        fmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return fmt.format(timestamp);
+    }
+
+    static @Nonnull String formatSwiftTimestamp(long timestamp) {
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'000'");
+
+        fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return fmt.format(timestamp);
+    }
+
+    private @Nonnull List<String> page(@Nonnull List<String> names, @Nonnull Map<String,String> query) {
+        String marker = query.get("marker");
+        String endMarker = query.get("end_marker");
+        int limit = MAX_LISTING;
+
+        if( query.containsKey("limit") ) {
+            try {
+                limit = Math.min(MAX_LISTING, Integer.parseInt(query.get("limit")));
+            }
+            catch( NumberFormatException ignore ) {
+                // fall back to the maximum
+            }
+        }
+        List<String> page = new ArrayList<String>();
+
+        for( String name : names ) {
+            if( marker != null && name.compareTo(marker) <= 0 ) {
+                continue;
+            }
+            if( endMarker != null && name.compareTo(endMarker) >= 0 ) {
+                break;
+            }
+            if( page.size() >= limit ) {
+                break;
+            }
+            page.add(name);
+        }
+        return page;
+    }
+
+    private void sendNames(@Nonnull HttpExchange exchange, @Nullable List<String> names) throws IOException {
+        if( names == null || names.isEmpty() ) {
+            sendEmpty(exchange, 204);
+            return;
+        }
+        StringBuilder str = new StringBuilder();
+
+        for( String name : names ) {
+            str.append(name).append("\n");
+        }
+        send(exchange, 200, "text/plain; charset=utf-8", str.toString().getBytes("utf-8"));
+    }
+}
@@ -0,0 +1,422 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.rackspace.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.rackspace.AbstractMethodTest;
+import org.dasein.cloud.rackspace.CloudFilesMethod;
+import org.dasein.cloud.rackspace.RackspaceCloud;
+import org.dasein.cloud.rackspace.standin.RackspaceStandIn;
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Exercises listing, segmented uploads, ranged downloads and bulk deletes in {@link CloudFiles} against the in-memory stand-in.
+ */
+public class CloudFilesTest {
+    private CloudFilesMethod method;
+    private RackspaceCloud   provider;
+    private RackspaceStandIn standIn;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = new RackspaceStandIn(0);
+        standIn.start();
+        provider = AbstractMethodTest.connect(standIn, AbstractMethodTest.getProperties());
+        method = new CloudFilesMethod(provider);
+    }
+
+    @After
+    public void tearDown() {
+        provider.close();
+        standIn.stop();
+    }
+
+    private List<String> fill(String bucket, int count) throws Exception {
+        ArrayList<String> names = new ArrayList<String>();
+
+        method.put(bucket);
+        for( int i=0; i<count; i++ ) {
+            String name = String.format("object-%03d", i);
+
+            method.put(bucket, name, ("content " + i).getBytes("utf-8"), "text/plain");
+            names.add(name);
+        }
+        return names;
+    }
+
+    @Test
+    public void pagesWithMarkerAndLimit() throws Exception {
+        List<String> names = fill("paged", 25);
+        ArrayList<String> listed = new ArrayList<String>();
+        String marker = null;
+        int pages = 0;
+
+        while( true ) {
+            JSONArray page = method.list("paged", marker, null, null, null, 10);
+
+            assertNotNull(page);
+            if( page.length() < 1 ) {
+                break;
+            }
+            assertTrue(page.length() <= 10);
+            pages++;
+            for( int i=0; i<page.length(); i++ ) {
+                marker = page.getJSONObject(i).getString("name");
+                listed.add(marker);
+            }
+        }
+        assertEquals(3, pages);
+        assertEquals(names, listed);
+        assertEquals(names, method.get("paged"));
+    }
+
+    @Test
+    public void pagesBetweenMarkers() throws Exception {
+        fill("bounded", 25);
+
+        JSONArray page = method.list("bounded", "object-004", "object-010", null, null, 3);
+
+        assertEquals(3, page.length());
+        assertEquals("object-005", page.getJSONObject(0).getString("name"));
+        page = method.list("bounded", "object-007", "object-010", null, null, 3);
+        assertEquals(2, page.length());
+        assertEquals("object-009", page.getJSONObject(1).getString("name"));
+    }
+
+    @Test
+    public void removesWithBulkDelete() throws Exception {
+        List<String> names = fill("bulk", 30);
+
+        names.add("missing");
+
+        long requests = standIn.getRequestCount();
+        BulkDeleteResult result = new CloudFiles(provider).removeObjects("bulk", names);
+
+        assertTrue(result.toString(), result.isSuccessful());
+        assertEquals(30, result.getDeletedCount());
+        assertEquals(1, result.getNotFoundCount());
+        assertEquals(0, standIn.getObjectCount("bulk"));
+        // one bulk request rather than one DELETE per object
+        assertEquals(1L, standIn.getRequestCount() - requests);
+    }
+
+    @Test
+    public void removesIndividuallyWithoutBulkDelete() throws Exception {
+        List<String> names = fill("single", 30);
+
+        names.add("missing");
+        standIn.setBulkDelete(false);
+
+        long requests = standIn.getRequestCount();
+        BulkDeleteResult result = new CloudFiles(provider).removeObjects("single", names);
+
+        assertTrue(result.toString(), result.isSuccessful());
+        assertEquals(30, result.getDeletedCount());
+        assertEquals(1, result.getNotFoundCount());
+        assertEquals(0, standIn.getObjectCount("single"));
+        // the bulk request the account ignored plus one DELETE per object
+        assertEquals(32L, standIn.getRequestCount() - requests);
+    }
+
+    @Test
+    public void removesIndividuallyWhenBulkDeleteIsTurnedOff() throws Exception {
+        Properties properties = AbstractMethodTest.getProperties();
+
+        properties.setProperty("bulkDelete", "false");
+        provider.close();
+        provider = AbstractMethodTest.connect(standIn, properties);
+        method = new CloudFilesMethod(provider);
+
+        List<String> names = fill("disabled", 10);
+        long requests = standIn.getRequestCount();
+        BulkDeleteResult result = new CloudFiles(provider).removeObjects("disabled", names);
+
+        assertEquals(10, result.getDeletedCount());
+        assertEquals(0, standIn.getObjectCount("disabled"));
+        assertEquals(10L, standIn.getRequestCount() - requests);
+    }
+
+    @Test
+    public void removesSegmentsOfReplacedAndRemovedManifests() throws Exception {
+        Properties properties = AbstractMethodTest.getProperties();
+
+        properties.setProperty("segmentSize", "16");
+        // the 10 byte upload below goes in one request, which only looks for a manifest when asked to
+        properties.setProperty("checkManifests", "true");
+        provider.close();
+        provider = AbstractMethodTest.connect(standIn, properties);
+        method = new CloudFilesMethod(provider);
+        method.put("segmented");
+
+        CloudFiles files = new CloudFiles(provider);
+        File file = File.createTempFile("segmented", ".txt");
+
+        try {
+            write(file, 100);
+            files.upload(file, "segmented", "large");
+            assertEquals(7, standIn.getObjectCount("segmented_segments"));
+            // a new upload gets its own prefix, so make sure the clock has moved on
+            Thread.sleep(5L);
+            write(file, 40);
+            files.upload(file, "segmented", "large");
+            assertEquals(3, standIn.getObjectCount("segmented_segments"));
+            write(file, 10);
+            files.upload(file, "segmented", "large");
+            assertEquals(0, standIn.getObjectCount("segmented_segments"));
+            write(file, 50);
+            files.upload(file, "segmented", "large");
+            assertEquals(4, standIn.getObjectCount("segmented_segments"));
+            files.removeObject("segmented", "large");
+            assertEquals(0, standIn.getObjectCount("segmented"));
+            assertEquals(0, standIn.getObjectCount("segmented_segments"));
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void uploadsSmallFilesWithoutManifestLookup() throws Exception {
+        Properties properties = AbstractMethodTest.getProperties();
+
+        properties.setProperty("segmentSize", "16");
+        provider.close();
+        provider = AbstractMethodTest.connect(standIn, properties);
+        method = new CloudFilesMethod(provider);
+        method.put("small");
+
+        CloudFiles files = new CloudFiles(provider);
+        File file = File.createTempFile("small", ".txt");
+
+        try {
+            write(file, 10);
+
+            long requests = standIn.getRequestCount();
+
+            files.put("small", "object", file);
+            // the PUT alone, with no HEAD to look for a manifest it might replace
+            assertEquals(1L, standIn.getRequestCount() - requests);
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void retriesAFailedSegment() throws Exception {
+        Properties properties = AbstractMethodTest.getProperties();
+
+        properties.setProperty("segmentSize", "16");
+        provider.close();
+        provider = AbstractMethodTest.connect(standIn, properties);
+        method = new CloudFilesMethod(provider);
+        method.put("retried");
+
+        CloudFiles files = new CloudFiles(provider);
+        File file = File.createTempFile("retried", ".txt");
+
+        try {
+            write(file, 100);
+            standIn.failMatching("PUT", "/00000003", 500);
+            files.upload(file, "retried", "large");
+            assertEquals(7, standIn.getObjectCount("retried_segments"));
+
+            File copy = File.createTempFile("retried", ".copy");
+
+            try {
+                files.get("retried", "large", copy, null);
+                assertArrayEquals(read(file), read(copy));
+            }
+            finally {
+                //noinspection ResultOfMethodCallIgnored
+                copy.delete();
+            }
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void downloadsInRangesWithoutHead() throws Exception {
+        Properties properties = AbstractMethodTest.getProperties();
+
+        properties.setProperty("rangeSize", "16");
+        properties.setProperty("downloadThreads", "4");
+        provider.close();
+        provider = AbstractMethodTest.connect(standIn, properties);
+        method = new CloudFilesMethod(provider);
+        method.put("ranged");
+
+        byte[] large = new byte[100];
+        byte[] small = new byte[10];
+
+        for( int i=0; i<large.length; i++ ) {
+            large[i] = (byte)('a' + (i % 26));
+        }
+        System.arraycopy(large, 0, small, 0, small.length);
+        method.put("ranged", "large", large, "text/plain");
+        method.put("ranged", "small", small, "text/plain");
+        method.put("ranged", "empty", new byte[0], "text/plain");
+
+        CloudFiles files = new CloudFiles(provider);
+        File file = File.createTempFile("ranged", ".txt");
+
+        try {
+            long requests = standIn.getRequestCount();
+
+            files.get("ranged", "large", file, null);
+            assertArrayEquals(large, read(file));
+            // seven ranges of 16 bytes, the first of which also gives the length
+            assertEquals(7L, standIn.getRequestCount() - requests);
+
+            requests = standIn.getRequestCount();
+            files.get("ranged", "small", file, null);
+            assertArrayEquals(small, read(file));
+            assertEquals(1L, standIn.getRequestCount() - requests);
+
+            files.get("ranged", "empty", file, null);
+            assertEquals(0L, file.length());
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void retriesAFailedRange() throws Exception {
+        byte[] data = putRanged(AbstractMethodTest.getProperties());
+        CloudFiles files = new CloudFiles(provider);
+        File file = File.createTempFile("ranged", ".txt");
+
+        try {
+            long requests = standIn.getRequestCount();
+
+            standIn.failRange("/ranged/large", 32L, 500);
+            files.get("ranged", "large", file, null);
+            assertArrayEquals(data, read(file));
+            // seven ranges and the one that was sent again
+            assertEquals(8L, standIn.getRequestCount() - requests);
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void deletesPartialDownloadOnceRetriesRunOut() throws Exception {
+        Properties properties = AbstractMethodTest.getProperties();
+
+        properties.setProperty("transferRetries", "0");
+        putRanged(properties);
+
+        CloudFiles files = new CloudFiles(provider);
+        File file = File.createTempFile("ranged", ".txt");
+
+        try {
+            standIn.failRange("/ranged/large", 32L, 500);
+            try {
+                files.get("ranged", "large", file, null);
+                fail("The download should have failed");
+            }
+            catch( CloudException expected ) {
+                assertEquals(500, expected.getHttpCode());
+            }
+            assertFalse(file.exists());
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private byte[] putRanged(Properties properties) throws Exception {
+        byte[] data = new byte[100];
+
+        properties.setProperty("rangeSize", "16");
+        properties.setProperty("downloadThreads", "4");
+        provider.close();
+        provider = AbstractMethodTest.connect(standIn, properties);
+        method = new CloudFilesMethod(provider);
+        method.put("ranged");
+        for( int i=0; i<data.length; i++ ) {
+            data[i] = (byte)('a' + (i % 26));
+        }
+        method.put("ranged", "large", data, "text/plain");
+        return data;
+    }
+
+    private byte[] read(File file) throws Exception {
+        byte[] data = new byte[(int)file.length()];
+        FileInputStream in = new FileInputStream(file);
+
+        try {
+            int offset = 0;
+
+            while( offset < data.length ) {
+                int n = in.read(data, offset, data.length - offset);
+
+                if( n < 0 ) {
+                    break;
+                }
+                offset += n;
+            }
+        }
+        finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private void write(File file, int length) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+
+        try {
+            for( int i=0; i<length; i++ ) {
+                out.write('a' + (i % 26));
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+}